@@ -0,0 +1,96 @@
+/*
+ *
+ *  * MIT License
+ *  *
+ *  * Copyright (c) 2024 Partha Sutradhar.
+ *  *
+ *  * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  * of this software and associated documentation files (the "Software"), to deal
+ *  * in the Software without restriction, including without limitation the rights
+ *  * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  * copies of the Software, and to permit persons to whom the Software is
+ *  * furnished to do so, subject to the following conditions:
+ *  *
+ *  * The above copyright notice and this permission notice shall be included in all
+ *  * copies or substantial portions of the Software.
+ *  *
+ *  * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  * SOFTWARE.
+ *
+ */
+
+
+package org.eventa.benchmarks;
+
+import org.eventa.core.cache.CacheConcurrentHashMap;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Concurrent reads and get-or-create on CacheConcurrentHashMap with a skewed key distribution. With a key space
+// larger than the maximum size the misses exercise eviction.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@Threads(4)
+public class CacheBenchmark {
+
+    private static final int MAXIMUM_SIZE = 10_000;
+    private static final int KEYS_PER_THREAD = 1 << 14;
+
+    @Param({"1000", "100000"})
+    public int keySpace;
+
+    private CacheConcurrentHashMap<Integer, Integer> cache;
+
+    @State(Scope.Thread)
+    public static class Keys {
+        private Integer[] keys;
+        private int next;
+
+        @Setup
+        public void setUp(CacheBenchmark benchmark) {
+            Random random = new Random(Thread.currentThread().getId());
+            keys = new Integer[KEYS_PER_THREAD];
+            for (int i = 0; i < keys.length; i++) {
+                // cubing a uniform draw favours low keys, a few hot entries and a long tail
+                double draw = random.nextDouble();
+                keys[i] = (int) (benchmark.keySpace * draw * draw * draw);
+            }
+        }
+
+        private Integer next() {
+            return keys[next++ & (KEYS_PER_THREAD - 1)];
+        }
+    }
+
+    @Setup
+    public void setUp() {
+        cache = CacheConcurrentHashMap.<Integer, Integer>builder()
+                .maximumSize(MAXIMUM_SIZE)
+                .recordStats(true)
+                .build();
+        for (int key = 0; key < Math.min(keySpace, MAXIMUM_SIZE); key++) {
+            cache.put(key, key);
+        }
+    }
+
+    @Benchmark
+    public Integer get(Keys keys) {
+        return cache.get(keys.next());
+    }
+
+    @Benchmark
+    public Integer computeIfAbsent(Keys keys) {
+        return cache.computeIfAbsent(keys.next(), key -> key);
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ *
+ *  * MIT License
+ *  *
+ *  * Copyright (c) 2024 Partha Sutradhar.
+ *  *
+ *  * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  * of this software and associated documentation files (the "Software"), to deal
+ *  * in the Software without restriction, including without limitation the rights
+ *  * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  * copies of the Software, and to permit persons to whom the Software is
+ *  * furnished to do so, subject to the following conditions:
+ *  *
+ *  * The above copyright notice and this permission notice shall be included in all
+ *  * copies or substantial portions of the Software.
+ *  *
+ *  * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  * SOFTWARE.
+ *
+ */
+
+
+package org.eventa.benchmarks;
+
+import org.eventa.benchmarks.model.AccountAggregate;
+import org.eventa.benchmarks.model.DepositCommand;
+import org.eventa.benchmarks.model.OpenAccountCommand;
+import org.eventa.benchmarks.support.BenchmarkContext;
+import org.eventa.core.config.CommandProperties.DispatchMode;
+import org.eventa.core.dispatcher.CommandDispatcher;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+// Command round trip through the dispatcher with the aggregate served from the aggregate cache. One operation of
+// sendConcurrently is a wave of `concurrency` commands in flight at once, on one aggregate when contended and on
+// distinct aggregates otherwise.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class CommandDispatchBenchmark {
+
+    @Param({"LOCKING", "MAILBOX"})
+    public DispatchMode mode;
+
+    @Param({"1", "4", "16"})
+    public int concurrency;
+
+    @Param({"false", "true"})
+    public boolean contended;
+
+    private AnnotationConfigApplicationContext context;
+    private CommandDispatcher commandDispatcher;
+    private UUID[] aggregateIds;
+    private CompletableFuture<?>[] wave;
+
+    @Setup
+    public void setUp() throws Exception {
+        context = BenchmarkContext.start(eventaProperties -> eventaProperties.getCommand().setMode(mode), AccountAggregate.class);
+        commandDispatcher = context.getBean(CommandDispatcher.class);
+        aggregateIds = new UUID[concurrency];
+        for (int i = 0; i < concurrency; i++) {
+            aggregateIds[i] = contended && i > 0 ? aggregateIds[0] : UUID.randomUUID();
+            if (!contended || i == 0) {
+                commandDispatcher.send(OpenAccountCommand.builder().id(aggregateIds[i]).owner("benchmark").build());
+            }
+        }
+        wave = new CompletableFuture<?>[concurrency];
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public String send() throws Exception {
+        return commandDispatcher.send(DepositCommand.builder().id(aggregateIds[0]).amount(1).build());
+    }
+
+    @Benchmark
+    public void sendConcurrently() {
+        for (int i = 0; i < concurrency; i++) {
+            wave[i] = commandDispatcher.sendAsync(DepositCommand.builder().id(aggregateIds[i]).amount(1).build());
+        }
+        CompletableFuture.allOf(wave).join();
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ *
+ *  * MIT License
+ *  *
+ *  * Copyright (c) 2024 Partha Sutradhar.
+ *  *
+ *  * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  * of this software and associated documentation files (the "Software"), to deal
+ *  * in the Software without restriction, including without limitation the rights
+ *  * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  * copies of the Software, and to permit persons to whom the Software is
+ *  * furnished to do so, subject to the following conditions:
+ *  *
+ *  * The above copyright notice and this permission notice shall be included in all
+ *  * copies or substantial portions of the Software.
+ *  *
+ *  * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  * SOFTWARE.
+ *
+ */
+
+
+package org.eventa.benchmarks;
+
+import org.eventa.benchmarks.model.ProbeEvents;
+import org.eventa.benchmarks.model.ProbeProjection;
+import org.eventa.benchmarks.support.BenchmarkContext;
+import org.eventa.core.dispatcher.EventDispatcher;
+import org.eventa.core.events.BaseEvent;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+// Delivery of consumed events to @EventHandler methods, rotating over `handlerTypes` registered event types.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@Threads(4)
+public class EventDispatchBenchmark {
+
+    @Param({"1", "4", "8"})
+    public int handlerTypes;
+
+    private AnnotationConfigApplicationContext context;
+    private EventDispatcher eventDispatcher;
+    private BaseEvent[] events;
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        private int next;
+    }
+
+    @Setup
+    public void setUp() {
+        context = BenchmarkContext.start(eventaProperties -> {
+        }, ProbeProjection.class);
+        eventDispatcher = context.getBean(EventDispatcher.class);
+        events = new BaseEvent[ProbeEvents.typeCount() * 8];
+        for (int i = 0; i < events.length; i++) {
+            events[i] = ProbeEvents.create(i % handlerTypes, UUID.randomUUID());
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public void handle(Cursor cursor) {
+        eventDispatcher.handle(events[cursor.next++ & (events.length - 1)]);
+    }
+
+    @Benchmark
+    public void dispatch(Cursor cursor) throws Exception {
+        eventDispatcher.dispatch(events[cursor.next++ & (events.length - 1)]).join();
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ *
+ *  * MIT License
+ *  *
+ *  * Copyright (c) 2024 Partha Sutradhar.
+ *  *
+ *  * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  * of this software and associated documentation files (the "Software"), to deal
+ *  * in the Software without restriction, including without limitation the rights
+ *  * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  * copies of the Software, and to permit persons to whom the Software is
+ *  * furnished to do so, subject to the following conditions:
+ *  *
+ *  * The above copyright notice and this permission notice shall be included in all
+ *  * copies or substantial portions of the Software.
+ *  *
+ *  * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  * SOFTWARE.
+ *
+ */
+
+
+package org.eventa.benchmarks;
+
+import org.eventa.benchmarks.model.AccountAggregate;
+import org.eventa.benchmarks.model.AccountOpenedEvent;
+import org.eventa.benchmarks.model.MoneyDepositedEvent;
+import org.eventa.benchmarks.support.BenchmarkContext;
+import org.eventa.core.events.BaseEvent;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+// Loading an aggregate without a snapshot: a fresh prototype instance replays its whole stream.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class ReplayBenchmark {
+
+    @Param({"10", "100", "1000"})
+    public int streamLength;
+
+    private AnnotationConfigApplicationContext context;
+    private List<BaseEvent> events;
+
+    @Setup
+    public void setUp() {
+        context = BenchmarkContext.start(eventaProperties -> {
+        }, AccountAggregate.class);
+        UUID id = UUID.randomUUID();
+        events = new ArrayList<>(streamLength);
+        events.add(AccountOpenedEvent.builder().id(id).version(0).owner("benchmark").build());
+        for (int version = 1; version < streamLength; version++) {
+            events.add(MoneyDepositedEvent.builder().id(id).version(version).amount(version).build());
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public AccountAggregate replayList() {
+        AccountAggregate aggregate = context.getBean(AccountAggregate.class);
+        aggregate.replayEvents(events);
+        return aggregate;
+    }
+
+    @Benchmark
+    public AccountAggregate replayStream() {
+        AccountAggregate aggregate = context.getBean(AccountAggregate.class);
+        aggregate.replayEvents(events.stream());
+        return aggregate;
+    }
+}
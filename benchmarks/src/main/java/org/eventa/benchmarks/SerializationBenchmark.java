@@ -0,0 +1,137 @@
+/*
+ *
+ *  * MIT License
+ *  *
+ *  * Copyright (c) 2024 Partha Sutradhar.
+ *  *
+ *  * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  * of this software and associated documentation files (the "Software"), to deal
+ *  * in the Software without restriction, including without limitation the rights
+ *  * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  * copies of the Software, and to permit persons to whom the Software is
+ *  * furnished to do so, subject to the following conditions:
+ *  *
+ *  * The above copyright notice and this permission notice shall be included in all
+ *  * copies or substantial portions of the Software.
+ *  *
+ *  * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  * SOFTWARE.
+ *
+ */
+
+
+package org.eventa.benchmarks;
+
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.apache.kafka.common.serialization.Deserializer;
+import org.apache.kafka.common.serialization.Serializer;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.eventa.benchmarks.model.PayloadEvent;
+import org.eventa.core.config.EventaProperties;
+import org.eventa.core.consumer.EventTypeFilteringDeserializer;
+import org.eventa.core.consumer.KafkaEventDeserializer;
+import org.eventa.core.producer.KafkaEventSerializer;
+import org.eventa.core.serializer.EventSerializer;
+import org.eventa.core.serializer.EventSerializers;
+import org.eventa.core.serializer.SchemaRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.kafka.support.serializer.JsonDeserializer;
+import org.springframework.kafka.support.serializer.JsonSerializer;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+// The event bus value (de)serializers with their headers as on the wire: spring-json is the JsonSerializer with type
+// headers, the others are EventSerializer formats. The serialized size is printed once per trial.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class SerializationBenchmark {
+
+    private static final String TOPIC = "BaseEvent";
+
+    @Param({"64", "1024", "16384"})
+    public int payloadSize;
+
+    @Param({"spring-json", "json", "cbor", "smile", "avro"})
+    public String format;
+
+    private Serializer<Object> serializer;
+    private Deserializer<Object> deserializer;
+    private PayloadEvent event;
+    private Headers headers;
+    private byte[] serialized;
+
+    @Setup
+    public void setUp() throws IOException {
+        if (format.equals("spring-json")) {
+            serializer = new JsonSerializer<>();
+            JsonDeserializer<Object> jsonDeserializer = new JsonDeserializer<>();
+            jsonDeserializer.addTrustedPackages("*");
+            // keep the type header so the same record can be deserialized on every invocation
+            jsonDeserializer.setRemoveTypeHeaders(false);
+            deserializer = jsonDeserializer;
+        } else {
+            EventaProperties eventaProperties = new EventaProperties();
+            eventaProperties.getSerialization().setSchemaRegistryDirectory(Files.createTempDirectory("eventa-schemas").toString());
+            StaticListableBeanFactory beanFactory = new StaticListableBeanFactory();
+            EventSerializers eventSerializers = new EventSerializers(eventaProperties,
+                    beanFactory.getBeanProvider(EventSerializer.class), beanFactory.getBeanProvider(SchemaRegistry.class));
+            serializer = new KafkaEventSerializer(eventSerializers.get(format));
+            serializer.configure(Map.of(), false);
+            deserializer = new KafkaEventDeserializer(eventSerializers);
+            deserializer.configure(Map.of(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class), false);
+        }
+
+        Random random = new Random(42);
+        StringBuilder payload = new StringBuilder(payloadSize);
+        for (int i = 0; i < payloadSize; i++) {
+            payload.append((char) ('a' + random.nextInt(26)));
+        }
+        event = PayloadEvent.builder()
+                .id(new UUID(random.nextLong(), random.nextLong()))
+                .version(7)
+                .payload(payload.toString())
+                .amount(random.nextLong())
+                .occurredAt(1_700_000_000_000L)
+                .tags(List.of("benchmark", "payload", "json"))
+                .build();
+        headers = new RecordHeaders();
+        headers.add(EventTypeFilteringDeserializer.EVENT_TYPE_HEADER, PayloadEvent.class.getName().getBytes(StandardCharsets.UTF_8));
+        serialized = serializer.serialize(TOPIC, headers, event);
+        System.out.println(format + " payload " + serialized.length + " bytes");
+    }
+
+    @TearDown
+    public void tearDown() {
+        serializer.close();
+        deserializer.close();
+    }
+
+    @Benchmark
+    public byte[] serialize() {
+        return serializer.serialize(TOPIC, new RecordHeaders(), event);
+    }
+
+    @Benchmark
+    public Object deserialize() {
+        return deserializer.deserialize(TOPIC, headers, serialized);
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ *
+ *  * MIT License
+ *  *
+ *  * Copyright (c) 2024 Partha Sutradhar.
+ *  *
+ *  * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  * of this software and associated documentation files (the "Software"), to deal
+ *  * in the Software without restriction, including without limitation the rights
+ *  * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  * copies of the Software, and to permit persons to whom the Software is
+ *  * furnished to do so, subject to the following conditions:
+ *  *
+ *  * The above copyright notice and this permission notice shall be included in all
+ *  * copies or substantial portions of the Software.
+ *  *
+ *  * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  * SOFTWARE.
+ *
+ */
+
+
+package org.eventa.benchmarks.model;
+
+import lombok.NoArgsConstructor;
+import org.eventa.core.aggregates.AggregateRoot;
+import org.eventa.core.streotype.Aggregate;
+import org.eventa.core.streotype.AggregateSnapshot;
+import org.eventa.core.streotype.CommandHandler;
+import org.eventa.core.streotype.EventSourcingHandler;
+import org.eventa.core.streotype.RoutingKey;
+
+import java.util.UUID;
+
+@Aggregate
+@NoArgsConstructor
+@AggregateSnapshot(interval = 0)
+public class AccountAggregate extends AggregateRoot {
+
+    @RoutingKey
+    private UUID id;
+    private String owner;
+    private long balance;
+
+    @CommandHandler(constructor = true)
+    public void handle(OpenAccountCommand openAccountCommand) {
+        apply(
+                AccountOpenedEvent.builder()
+                        .id(openAccountCommand.getId())
+                        .owner(openAccountCommand.getOwner())
+                        .build()
+        );
+    }
+
+    @CommandHandler
+    public void handle(DepositCommand depositCommand) {
+        apply(
+                MoneyDepositedEvent.builder()
+                        .id(depositCommand.getId())
+                        .amount(depositCommand.getAmount())
+                        .build()
+        );
+    }
+
+    @EventSourcingHandler
+    public void on(AccountOpenedEvent accountOpenedEvent) {
+        this.id = accountOpenedEvent.getId();
+        this.owner = accountOpenedEvent.getOwner();
+        this.balance = 0;
+    }
+
+    @EventSourcingHandler
+    public void on(MoneyDepositedEvent moneyDepositedEvent) {
+        this.balance += moneyDepositedEvent.getAmount();
+    }
+
+    public long getBalance() {
+        return balance;
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ *
+ *  * MIT License
+ *  *
+ *  * Copyright (c) 2024 Partha Sutradhar.
+ *  *
+ *  * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  * of this software and associated documentation files (the "Software"), to deal
+ *  * in the Software without restriction, including without limitation the rights
+ *  * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  * copies of the Software, and to permit persons to whom the Software is
+ *  * furnished to do so, subject to the following conditions:
+ *  *
+ *  * The above copyright notice and this permission notice shall be included in all
+ *  * copies or substantial portions of the Software.
+ *  *
+ *  * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  * SOFTWARE.
+ *
+ */
+
+
+package org.eventa.benchmarks.model;
+
+import org.eventa.core.events.BaseEvent;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+// Distinct event types so dispatch can be measured against a growing number of registered handlers.
+public final class ProbeEvents {
+
+    public static class Probe0 extends BaseEvent {
+    }
+
+    public static class Probe1 extends BaseEvent {
+    }
+
+    public static class Probe2 extends BaseEvent {
+    }
+
+    public static class Probe3 extends BaseEvent {
+    }
+
+    public static class Probe4 extends BaseEvent {
+    }
+
+    public static class Probe5 extends BaseEvent {
+    }
+
+    public static class Probe6 extends BaseEvent {
+    }
+
+    public static class Probe7 extends BaseEvent {
+    }
+
+    private static final List<Supplier<BaseEvent>> TYPES = List.of(Probe0::new, Probe1::new, Probe2::new, Probe3::new,
+            Probe4::new, Probe5::new, Probe6::new, Probe7::new);
+
+    private ProbeEvents() {
+    }
+
+    public static int typeCount() {
+        return TYPES.size();
+    }
+
+    public static BaseEvent create(int type, UUID id) {
+        BaseEvent event = TYPES.get(type).get();
+        event.setId(id);
+        return event;
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ *
+ *  * MIT License
+ *  *
+ *  * Copyright (c) 2024 Partha Sutradhar.
+ *  *
+ *  * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  * of this software and associated documentation files (the "Software"), to deal
+ *  * in the Software without restriction, including without limitation the rights
+ *  * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  * copies of the Software, and to permit persons to whom the Software is
+ *  * furnished to do so, subject to the following conditions:
+ *  *
+ *  * The above copyright notice and this permission notice shall be included in all
+ *  * copies or substantial portions of the Software.
+ *  *
+ *  * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  * SOFTWARE.
+ *
+ */
+
+
+package org.eventa.benchmarks.model;
+
+import org.eventa.core.streotype.EventHandler;
+import org.eventa.core.streotype.ProjectionGroup;
+
+import java.util.concurrent.atomic.LongAdder;
+
+@ProjectionGroup
+public class ProbeProjection {
+
+    // projection groups are prototype beans, the count has to outlive the instance
+    private static final LongAdder HANDLED = new LongAdder();
+
+    public static long handled() {
+        return HANDLED.sum();
+    }
+
+    @EventHandler
+    public void on(ProbeEvents.Probe0 event) {
+        HANDLED.increment();
+    }
+
+    @EventHandler
+    public void on(ProbeEvents.Probe1 event) {
+        HANDLED.increment();
+    }
+
+    @EventHandler
+    public void on(ProbeEvents.Probe2 event) {
+        HANDLED.increment();
+    }
+
+    @EventHandler
+    public void on(ProbeEvents.Probe3 event) {
+        HANDLED.increment();
+    }
+
+    @EventHandler
+    public void on(ProbeEvents.Probe4 event) {
+        HANDLED.increment();
+    }
+
+    @EventHandler
+    public void on(ProbeEvents.Probe5 event) {
+        HANDLED.increment();
+    }
+
+    @EventHandler
+    public void on(ProbeEvents.Probe6 event) {
+        HANDLED.increment();
+    }
+
+    @EventHandler
+    public void on(ProbeEvents.Probe7 event) {
+        HANDLED.increment();
+    }
+}
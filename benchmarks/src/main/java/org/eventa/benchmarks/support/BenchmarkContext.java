@@ -0,0 +1,122 @@
+/*
+ *
+ *  * MIT License
+ *  *
+ *  * Copyright (c) 2024 Partha Sutradhar.
+ *  *
+ *  * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  * of this software and associated documentation files (the "Software"), to deal
+ *  * in the Software without restriction, including without limitation the rights
+ *  * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  * copies of the Software, and to permit persons to whom the Software is
+ *  * furnished to do so, subject to the following conditions:
+ *  *
+ *  * The above copyright notice and this permission notice shall be included in all
+ *  * copies or substantial portions of the Software.
+ *  *
+ *  * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  * SOFTWARE.
+ *
+ */
+
+
+package org.eventa.benchmarks.support;
+
+import org.eventa.core.config.EventaProperties;
+import org.eventa.core.dispatcher.impl.CommandDispatcherImpl;
+import org.eventa.core.dispatcher.impl.EventDispatcherImpl;
+import org.eventa.core.factory.AggregateCache;
+import org.eventa.core.factory.AggregateFactory;
+import org.eventa.core.interceptor.CommandInterceptorRegisterer;
+import org.eventa.core.lock.AggregateLockManager;
+import org.eventa.core.processor.PostProcessor;
+import org.eventa.core.registry.*;
+import org.eventa.core.repository.SnapshotRepository;
+import org.eventa.core.saga.InMemorySagaStateStore;
+import org.eventa.core.saga.SagaHandler;
+import org.eventa.core.saga.SagaStateStore;
+import org.eventa.core.serializer.EventSerializers;
+import org.eventa.core.snapshot.BinarySnapshotCodec;
+import org.eventa.core.snapshot.SnapshotCodec;
+import org.eventa.core.snapshot.SnapshotManager;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.lang.reflect.Proxy;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+// Wires the real dispatchers, registries and aggregate factory the way the auto-configuration does, with the Mongo
+// and Kafka backed collaborators replaced by in-memory stand-ins so no infrastructure is needed.
+public final class BenchmarkContext {
+
+    private BenchmarkContext() {
+    }
+
+    public static AnnotationConfigApplicationContext start(Consumer<EventaProperties> customizer, Class<?>... components) {
+        EventaProperties eventaProperties = new EventaProperties();
+        eventaProperties.getAggregateCache().setEnabled(true);
+        customizer.accept(eventaProperties);
+
+        AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext();
+        context.registerBean(EventaProperties.class, () -> eventaProperties);
+        context.registerBean(DiscardingEventStore.class);
+        context.registerBean(CommandInterceptorRegisterer.class);
+        context.registerBean(SnapshotCodec.class, () -> new BinarySnapshotCodec());
+        context.registerBean(SnapshotRepository.class, () -> emptyRepository(SnapshotRepository.class));
+        context.registerBean(SagaStateStore.class, InMemorySagaStateStore::new);
+        context.registerBean(EventSerializers.class);
+        context.registerBean(SnapshotManager.class, () -> new SnapshotManager(
+                context.getBean(SnapshotRepository.class), null, context.getBean(SnapshotCodec.class), eventaProperties));
+        int threads = Math.max(1, Runtime.getRuntime().availableProcessors());
+        context.registerBean("eventaCommandExecutor", ExecutorService.class, () -> Executors.newFixedThreadPool(threads),
+                definition -> definition.setDestroyMethodName("shutdown"));
+        context.registerBean("eventaTaskExecutor", TaskExecutor.class, () -> {
+            ThreadPoolTaskExecutor taskExecutor = new ThreadPoolTaskExecutor();
+            taskExecutor.setCorePoolSize(threads);
+            taskExecutor.setMaxPoolSize(threads);
+            taskExecutor.setThreadNamePrefix("eventa-event-");
+            taskExecutor.initialize();
+            return taskExecutor;
+        }, definition -> definition.setDestroyMethodName("shutdown"));
+        context.register(CommandHandlerRegistry.class, EventSourcingHandlerRegistry.class, EventHandlerRegistry.class,
+                QueryHandlerRegistry.class, SagaHandlerRegistry.class, LeaderHandlerRegistry.class,
+                NotLeaderHandlerRegistry.class, PostProcessor.class, AggregateCache.class, AggregateFactory.class,
+                AggregateLockManager.class, SagaHandler.class, CommandDispatcherImpl.class, EventDispatcherImpl.class);
+        context.register(components);
+        context.refresh();
+        return context;
+    }
+
+    // Mongo repositories that never find anything and accept every write
+    @SuppressWarnings("unchecked")
+    private static <T> T emptyRepository(Class<T> repositoryType) {
+        return (T) Proxy.newProxyInstance(repositoryType.getClassLoader(), new Class<?>[]{repositoryType}, (proxy, method, args) -> {
+            if (method.getDeclaringClass() == Object.class) {
+                return switch (method.getName()) {
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "equals" -> proxy == args[0];
+                    default -> repositoryType.getSimpleName() + " stand-in";
+                };
+            }
+            if (method.getReturnType() == Optional.class) {
+                return Optional.empty();
+            }
+            if (method.getReturnType() == boolean.class) {
+                return false;
+            }
+            if (method.getReturnType() == long.class) {
+                return 0L;
+            }
+            return method.getName().startsWith("save") && args != null && args.length == 1 ? args[0] : null;
+        });
+    }
+}
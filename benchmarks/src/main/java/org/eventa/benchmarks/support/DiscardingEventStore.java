@@ -0,0 +1,91 @@
+/*
+ *
+ *  * MIT License
+ *  *
+ *  * Copyright (c) 2024 Partha Sutradhar.
+ *  *
+ *  * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  * of this software and associated documentation files (the "Software"), to deal
+ *  * in the Software without restriction, including without limitation the rights
+ *  * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  * copies of the Software, and to permit persons to whom the Software is
+ *  * furnished to do so, subject to the following conditions:
+ *  *
+ *  * The above copyright notice and this permission notice shall be included in all
+ *  * copies or substantial portions of the Software.
+ *  *
+ *  * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  * SOFTWARE.
+ *
+ */
+
+
+package org.eventa.benchmarks.support;
+
+import org.eventa.core.events.BaseEvent;
+import org.eventa.core.eventstore.EventModel;
+import org.eventa.core.eventstore.EventStore;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+// Stands in for Mongo and Kafka: appends are acknowledged at once and only counted, so a benchmark measures the
+// dispatch path rather than I/O and its heap does not grow with the run. Reads return nothing, the benchmarks keep
+// their aggregates in the aggregate cache.
+public class DiscardingEventStore implements EventStore {
+
+    private final LongAdder appended = new LongAdder();
+
+    public long appended() {
+        return appended.sum();
+    }
+
+    @Override
+    public void saveEvents(UUID aggregateId, String aggregateType, Iterable<BaseEvent> events, int expectedVersion, boolean constructor) {
+        events.forEach(event -> appended.increment());
+    }
+
+    @Override
+    public CompletableFuture<String> saveEvents(UUID aggregateId, String aggregateType, List<BaseEvent> events, int expectedVersion, boolean constructor) {
+        // same version numbering as the Mongo store, expectedVersion is the version after the last event
+        int version = expectedVersion - events.size();
+        for (BaseEvent event : events) {
+            event.setVersion(++version);
+        }
+        appended.add(events.size());
+        return CompletableFuture.completedFuture(aggregateId.toString());
+    }
+
+    @Override
+    public List<BaseEvent> getEventsFromAggregate(UUID aggregateId) {
+        return List.of();
+    }
+
+    @Override
+    public List<BaseEvent> findEventsAfterVersion(UUID aggregateId, int version) {
+        return List.of();
+    }
+
+    @Override
+    public Stream<BaseEvent> streamEventsFromAggregate(UUID aggregateId) {
+        return Stream.empty();
+    }
+
+    @Override
+    public Stream<BaseEvent> streamEventsAfterVersion(UUID aggregateId, int version) {
+        return Stream.empty();
+    }
+
+    @Override
+    public Stream<EventModel> readAll(long fromPosition, int batchSize) {
+        return Stream.empty();
+    }
+}
@@ -30,6 +30,7 @@ import lombok.Getter;
 import lombok.Setter;
 import lombok.extern.log4j.Log4j2;
 import org.eventa.core.registry.EventSourcingHandlerRegistry;
+import org.eventa.core.registry.HandlerInvoker;
 import org.eventa.core.streotype.AggregateSnapshot;
 import org.eventa.core.streotype.RoutingKey;
 import org.springframework.context.ApplicationContext;
@@ -37,23 +38,39 @@ import org.springframework.context.ApplicationContextAware;
 import org.eventa.core.events.BaseEvent;
 
 import java.lang.reflect.Field;
-import java.lang.reflect.Method;
 import java.util.*;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Stream;
 
 
 @Log4j2
 public abstract class AggregateRoot implements ApplicationContextAware {
 
+    // @RoutingKey fields per aggregate class, resolved once instead of on every applied event
+    private static final ClassValue<Field[]> ROUTING_KEYS = new ClassValue<>() {
+        @Override
+        protected Field[] computeValue(Class<?> type) {
+            return Arrays.stream(type.getDeclaredFields())
+                    .filter(field -> field.isAnnotationPresent(RoutingKey.class))
+                    .peek(field -> field.setAccessible(true))
+                    .toArray(Field[]::new);
+        }
+    };
+
     @Getter
     protected UUID id;
     @Setter
     @Getter
     protected int version = -1;
     private ApplicationContext applicationContext;
+    private EventSourcingHandlerRegistry eventSourcingHandlerRegistry;
     private final List<BaseEvent> changes = new CopyOnWriteArrayList<>();
     @Getter
     private final int snapshotInterval;
+    // encoded size of the last snapshot of this instance, 0 until one was taken or restored
+    @Getter
+    @Setter
+    private int encodedSize;
 
     public AggregateRoot() {
         AggregateSnapshot aggregateSnapshotAnnotation = this.getClass().getAnnotation(AggregateSnapshot.class);
@@ -84,6 +101,10 @@ public abstract class AggregateRoot implements ApplicationContextAware {
         }
     }
 
+    public void replayEvents(Stream<BaseEvent> events) {
+        events.forEachOrdered(event -> apply(event, false));
+    }
+
     protected void apply(BaseEvent baseEvent) {
         apply(baseEvent, true);
     }
@@ -92,8 +113,10 @@ public abstract class AggregateRoot implements ApplicationContextAware {
         handleEvent(baseEvent);
         if (isNewEvent) {
             changes.add(baseEvent);
+            this.version++;
+        } else {
+            this.version = baseEvent.getVersion();
         }
-        this.version++;
     }
 
     public Snapshot takeSnapshot() {
@@ -127,8 +150,8 @@ public abstract class AggregateRoot implements ApplicationContextAware {
 
     private Snapshot createSnapshot() {
         Object state = getAggregateState();
-        Snapshot snapshot = new Snapshot(id, version, state);
-        System.out.println("Version : " + version);
+        Snapshot snapshot = new Snapshot(id, version, state, null);
+        log.debug("Snapshot version : {}", version);
         return snapshot;
     }
 
@@ -148,20 +171,14 @@ public abstract class AggregateRoot implements ApplicationContextAware {
 
 
     private void handleEvent(BaseEvent baseEvent) {
-        EventSourcingHandlerRegistry registry = applicationContext.getBean(EventSourcingHandlerRegistry.class);
-        Class<?> clazz = baseEvent.getClass();
-        Method handler = registry.getHandler(clazz);
-        if (handler != null && handler.getDeclaringClass().isAssignableFrom(this.getClass())) {
-
-            for (Field field : this.getClass().getDeclaredFields()) {
-                if (field.isAnnotationPresent(RoutingKey.class)) {
-                    field.setAccessible(true);
-                    try {
-                        this.id = baseEvent.getId();
-                        field.set(this, baseEvent.getId());
-                    } catch (IllegalAccessException e) {
-                        throw new RuntimeException(e);
-                    }
+        HandlerInvoker handler = eventSourcingHandlerRegistry().getInvoker(baseEvent.getClass());
+        if (handler != null && handler.getMethod().getDeclaringClass().isAssignableFrom(this.getClass())) {
+            for (Field field : ROUTING_KEYS.get(this.getClass())) {
+                try {
+                    this.id = baseEvent.getId();
+                    field.set(this, baseEvent.getId());
+                } catch (IllegalAccessException e) {
+                    throw new RuntimeException(e);
                 }
             }
 
@@ -173,5 +190,11 @@ public abstract class AggregateRoot implements ApplicationContextAware {
         }
     }
 
+    private EventSourcingHandlerRegistry eventSourcingHandlerRegistry() {
+        if (eventSourcingHandlerRegistry == null) {
+            eventSourcingHandlerRegistry = applicationContext.getBean(EventSourcingHandlerRegistry.class);
+        }
+        return eventSourcingHandlerRegistry;
+    }
 
 }
@@ -43,4 +43,5 @@ public class Snapshot {
     private final UUID id;
     private final int version;
     private final Object state;
+    private final byte[] payload;
 }
\ No newline at end of file
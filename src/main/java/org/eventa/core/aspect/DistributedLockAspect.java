@@ -33,19 +33,26 @@ import org.aspectj.lang.annotation.Around;
 import org.aspectj.lang.annotation.Aspect;
 import org.aspectj.lang.reflect.MethodSignature;
 import org.eventa.core.streotype.DistributedLock;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.stereotype.Component;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
 @Aspect
 @Component
 public class DistributedLockAspect {
 
     private static final Logger log = LogManager.getLogger(DistributedLockAspect.class);
 
-    private final CuratorFramework curatorFramework;
+    private final ObjectProvider<CuratorFramework> curatorFramework;
+    // used when ZooKeeper is disabled, the lock then only excludes callers in this JVM
+    private final Map<String, ReentrantLock> localLocks = new ConcurrentHashMap<>();
 
-    public DistributedLockAspect(CuratorFramework curatorFramework) {
+    public DistributedLockAspect(ObjectProvider<CuratorFramework> curatorFramework) {
         this.curatorFramework = curatorFramework;
     }
 
@@ -54,7 +61,11 @@ public class DistributedLockAspect {
         MethodSignature signature = (MethodSignature) joinPoint.getSignature();
         DistributedLock distributedLock = signature.getMethod().getAnnotation(DistributedLock.class);
         String path = "/locks/" + distributedLock.value();
-        InterProcessMutex lock = new InterProcessMutex(curatorFramework, path);
+        CuratorFramework client = curatorFramework.getIfAvailable();
+        if (client == null) {
+            return aroundLocal(joinPoint, distributedLock, path);
+        }
+        InterProcessMutex lock = new InterProcessMutex(client, path);
 
         log.info("Attempting to acquire lock: {}", path);
 
@@ -71,4 +82,17 @@ public class DistributedLockAspect {
             throw new RuntimeException("Could not acquire lock");
         }
     }
+
+    private Object aroundLocal(ProceedingJoinPoint joinPoint, DistributedLock distributedLock, String path) throws Throwable {
+        ReentrantLock lock = localLocks.computeIfAbsent(path, key -> new ReentrantLock());
+        if (lock.tryLock(distributedLock.timeout(), distributedLock.timeUnit())) {
+            try {
+                return joinPoint.proceed();
+            } finally {
+                lock.unlock();
+            }
+        }
+        log.error("Could not acquire lock: {}", path);
+        throw new RuntimeException("Could not acquire lock");
+    }
 }
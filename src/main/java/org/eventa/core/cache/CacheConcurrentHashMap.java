@@ -24,76 +24,98 @@
  *
  */
 
+
 package org.eventa.core.cache;
 
-import java.util.LinkedHashMap;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalListener;
+import com.github.benmanes.caffeine.cache.Weigher;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import lombok.Builder;
+
+import java.time.Duration;
 import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
 
+// Bounded concurrent cache backed by Caffeine: reads are lock-free, recency is recorded through buffers that are
+// drained in batches, and eviction uses W-TinyLFU admission instead of a single synchronized LRU list.
 public class CacheConcurrentHashMap<K, V> {
 
-    private final int maxSize;
-    private final ConcurrentMap<K, V> cache;
-    private final LinkedHashMap<K, V> lruMap;
+    private final Cache<K, V> cache;
+    private final ConcurrentMap<K, V> map;
 
     public CacheConcurrentHashMap(int maxSize) {
-        this.maxSize = maxSize;
-        this.cache = new ConcurrentHashMap<>();
-        this.lruMap = new LinkedHashMap<K, V>(maxSize, 0.75f, true) {
-            @Override
-            protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
-                return size() > CacheConcurrentHashMap.this.maxSize;
-            }
-        };
+        this(maxSize, 0, null, null, null, null, false, false);
     }
 
-    public V put(K key, V value) {
-        synchronized (lruMap) {
-            V oldValue = cache.put(key, value);
-            lruMap.put(key, value);
-            if (lruMap.size() > maxSize) {
-                Map.Entry<K, V> eldest = lruMap.entrySet().iterator().next();
-                cache.remove(eldest.getKey());
-                lruMap.remove(eldest.getKey());
+    @Builder
+    private CacheConcurrentHashMap(long maximumSize, long maximumWeight, Weigher<? super K, ? super V> weigher,
+                                   Duration expireAfterAccess, Duration expireAfterWrite,
+                                   RemovalListener<? super K, ? super V> removalListener, boolean weakValues,
+                                   boolean recordStats) {
+        Caffeine<Object, Object> builder = Caffeine.newBuilder();
+        if (maximumWeight > 0) {
+            if (weigher == null) {
+                throw new IllegalArgumentException("A weigher is required when maximumWeight is set");
             }
-            return oldValue;
+            builder.maximumWeight(maximumWeight);
+        } else if (maximumSize > 0) {
+            builder.maximumSize(maximumSize);
+        }
+        if (expireAfterAccess != null) {
+            builder.expireAfterAccess(expireAfterAccess);
+        }
+        if (expireAfterWrite != null) {
+            builder.expireAfterWrite(expireAfterWrite);
         }
+        // values only referenced by the cache are collected, entries in use by a caller are never evicted
+        if (weakValues) {
+            builder.weakValues();
+        }
+        if (recordStats) {
+            builder.recordStats();
+        }
+        Caffeine<K, V> typed = maximumWeight > 0 ? builder.weigher(weigher) : cast(builder);
+        this.cache = removalListener == null ? typed.build() : typed.removalListener(removalListener).build();
+        this.map = cache.asMap();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <K, V> Caffeine<K, V> cast(Caffeine<Object, Object> builder) {
+        return (Caffeine<K, V>) (Caffeine<?, ?>) builder;
+    }
+
+    public V put(K key, V value) {
+        return map.put(key, value);
     }
 
     public V get(K key) {
-        synchronized (lruMap) {
-            return cache.get(key);
-        }
+        return cache.getIfPresent(key);
     }
 
     public V remove(K key) {
-        synchronized (lruMap) {
-            lruMap.remove(key);
-            return cache.remove(key);
-        }
+        return map.remove(key);
     }
 
     public boolean containsKey(K key) {
-        synchronized (lruMap) {
-            return cache.containsKey(key);
-        }
+        return map.containsKey(key);
     }
 
     public int size() {
-        synchronized (lruMap) {
-            return cache.size();
-        }
+        return map.size();
     }
 
-    public V computeIfAbsent(K key, java.util.function.Function<? super K, ? extends V> mappingFunction) {
-        synchronized (lruMap) {
-            if (!cache.containsKey(key)) {
-                V value = mappingFunction.apply(key);
-                put(key, value);
-                return value;
-            }
-            return cache.get(key);
-        }
+    public V computeIfAbsent(K key, Function<? super K, ? extends V> mappingFunction) {
+        return cache.get(key, mappingFunction);
+    }
+
+    public void clear() {
+        cache.invalidateAll();
+    }
+
+    // hit, miss and eviction counters, all zero unless the cache was built with recordStats
+    public CacheStats stats() {
+        return cache.stats();
     }
 }
@@ -0,0 +1,58 @@
+/*
+ *
+ *  * MIT License
+ *  *
+ *  * Copyright (c) 2024 Partha Sutradhar.
+ *  *
+ *  * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  * of this software and associated documentation files (the "Software"), to deal
+ *  * in the Software without restriction, including without limitation the rights
+ *  * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  * copies of the Software, and to permit persons to whom the Software is
+ *  * furnished to do so, subject to the following conditions:
+ *  *
+ *  * The above copyright notice and this permission notice shall be included in all
+ *  * copies or substantial portions of the Software.
+ *  *
+ *  * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  * SOFTWARE.
+ *
+ */
+
+package org.eventa.core.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "command")
+public class CommandProperties {
+    private DispatchMode mode = DispatchMode.LOCKING;
+    // VIRTUAL uses a virtual thread per command where the JDK supports it (21+), otherwise falls back to PLATFORM
+    private ExecutorType executor = ExecutorType.VIRTUAL;
+    // size of the PLATFORM command pool
+    private int poolSize = Runtime.getRuntime().availableProcessors();
+    // MAILBOX mode only: commands of one aggregate handled per load/append cycle
+    private int maxBatchSize = 32;
+    // MAILBOX mode only: how long a mailbox waits for more commands before draining, 0 drains immediately
+    private long batchWindowMs = 0;
+
+    public enum DispatchMode {
+        // caller thread holds a per-aggregate lock for the whole command
+        LOCKING,
+        // commands are queued per aggregate and drained serially on the command executor
+        MAILBOX
+    }
+
+    public enum ExecutorType {
+        PLATFORM,
+        VIRTUAL
+    }
+}
@@ -34,6 +34,8 @@ import org.springframework.boot.context.properties.ConfigurationProperties;
 @Setter
 @ConfigurationProperties(prefix = "curator")
 public class CuratorProperties {
+    // false skips ZooKeeper: this node is always the leader and @DistributedLock only locks within the JVM
+    private boolean enabled = true;
     private String hostname;
     private int baseSleepTimeMs = 1000;
     private int maxRetries = 3;
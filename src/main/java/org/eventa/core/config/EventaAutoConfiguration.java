@@ -35,15 +35,20 @@ import org.apache.curator.framework.recipes.leader.LeaderLatch;
 import org.apache.curator.framework.recipes.leader.LeaderLatchListener;
 import org.apache.curator.retry.ExponentialBackoffRetry;
 import org.eventa.core.interceptor.CommandInterceptorRegisterer;
+import org.eventa.core.producer.AggregateIdEventPartitioner;
+import org.eventa.core.producer.EventPartitioner;
 import org.eventa.core.registry.*;
 import org.eventa.core.repository.EventStoreRepository;
 import org.eventa.core.repository.SagaStateRepository;
+import org.eventa.core.snapshot.BinarySnapshotCodec;
+import org.eventa.core.snapshot.SnapshotCodec;
 import org.springframework.beans.BeansException;
 import org.springframework.beans.factory.BeanFactory;
 import org.springframework.beans.factory.BeanFactoryAware;
 import org.springframework.boot.autoconfigure.AutoConfiguration;
 import org.springframework.boot.autoconfigure.AutoConfigureAfter;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.autoconfigure.mongo.MongoAutoConfiguration;
 import org.springframework.boot.context.properties.ConfigurationPropertiesScan;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
@@ -58,9 +63,13 @@ import org.springframework.data.mongodb.MongoDatabaseFactory;
 import org.springframework.data.mongodb.MongoTransactionManager;
 import org.springframework.data.mongodb.repository.config.EnableMongoRepositories;
 import org.springframework.scheduling.annotation.EnableAsync;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 
 @Log4j2
 @AutoConfiguration
@@ -88,6 +97,7 @@ public class EventaAutoConfiguration implements BeanFactoryAware {
 
 
     @Bean(initMethod = "start", destroyMethod = "close")
+    @ConditionalOnProperty(name = "eventa.curator.enabled", havingValue = "true", matchIfMissing = true)
     @ConditionalOnMissingBean
     public CuratorFramework curatorFramework() {
         CuratorFramework curatorFramework = CuratorFrameworkFactory.newClient(eventaProperties.getCurator().getHostname(),
@@ -108,6 +118,7 @@ public class EventaAutoConfiguration implements BeanFactoryAware {
 
 
     @Bean
+    @ConditionalOnProperty(name = "eventa.curator.enabled", havingValue = "true", matchIfMissing = true)
     @ConditionalOnMissingBean
     public LeaderLatch leaderLatch(CuratorFramework curatorFramework, ApplicationContext applicationContext) {
         LeaderLatch leaderLatch = new LeaderLatch(curatorFramework, "/leader/latch");
@@ -150,19 +161,53 @@ public class EventaAutoConfiguration implements BeanFactoryAware {
 
     @Bean
     public TaskExecutor eventaTaskExecutor() {
-        SimpleAsyncTaskExecutor taskExecutor = new SimpleAsyncTaskExecutor();
-        taskExecutor.setThreadNamePrefix("eventa-group");
-        taskExecutor.setConcurrencyLimit(Runtime.getRuntime().availableProcessors() / 2);
+        KafkaProperties kafka = eventaProperties.getKafka() != null ? eventaProperties.getKafka() : new KafkaProperties();
+        // unbounded so the poll thread never blocks here, DispatchBackpressure keeps it near the high watermark:
+        // at most max.poll.records x concurrency events past it
+        ThreadPoolTaskExecutor taskExecutor = new ThreadPoolTaskExecutor();
+        taskExecutor.setCorePoolSize(Math.max(1, kafka.getEventThreads()));
+        taskExecutor.setMaxPoolSize(Math.max(1, kafka.getEventThreads()));
+        taskExecutor.setThreadNamePrefix("eventa-group-");
+        taskExecutor.initialize();
         return taskExecutor;
     }
 
 
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService eventaCommandExecutor() {
+        if (eventaProperties.getCommand().getExecutor() == CommandProperties.ExecutorType.VIRTUAL) {
+            try {
+                return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            } catch (ReflectiveOperationException e) {
+                log.info("Virtual threads are not available on Java {}, using a platform thread pool for commands.", Runtime.version().feature());
+            }
+        }
+        AtomicInteger threadNumber = new AtomicInteger();
+        return Executors.newFixedThreadPool(Math.max(1, eventaProperties.getCommand().getPoolSize()), runnable -> {
+            Thread thread = new Thread(runnable, "eventa-command-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
     @Bean
     @ConditionalOnMissingBean
     public CommandInterceptorRegisterer commandInterceptorRegisterer() {
         return new CommandInterceptorRegisterer();
     }
 
+    @Bean
+    @ConditionalOnMissingBean
+    public SnapshotCodec snapshotCodec() {
+        return new BinarySnapshotCodec();
+    }
+
+    @Bean
+    @ConditionalOnMissingBean
+    public EventPartitioner eventPartitioner() {
+        return new AggregateIdEventPartitioner();
+    }
+
     @Bean
     @ConditionalOnMissingBean
     public MongoTransactionManager mongoTransactionManager(MongoDatabaseFactory dbFactory) {
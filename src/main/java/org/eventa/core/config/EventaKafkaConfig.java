@@ -27,20 +27,48 @@
 package org.eventa.core.config;
 
 import org.apache.kafka.clients.admin.NewTopic;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.eventa.core.consumer.EventTypeFilteringDeserializer;
+import org.eventa.core.consumer.KafkaEventDeserializer;
+import org.eventa.core.processor.PostProcessor;
+import org.eventa.core.producer.KafkaEventProducer;
+import org.eventa.core.producer.KafkaEventSerializer;
+import org.eventa.core.registry.EventHandlerRegistry;
+import org.eventa.core.registry.SagaHandlerRegistry;
+import org.eventa.core.serializer.EventSerializer;
+import org.eventa.core.serializer.EventSerializers;
+import org.eventa.core.streotype.Aggregate;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.kafka.ConcurrentKafkaListenerContainerFactoryConfigurer;
+import org.springframework.boot.autoconfigure.kafka.DefaultKafkaConsumerFactoryCustomizer;
+import org.springframework.boot.autoconfigure.kafka.DefaultKafkaProducerFactoryCustomizer;
+import org.springframework.context.ApplicationContext;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.kafka.annotation.EnableKafka;
+import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
 import org.springframework.kafka.config.TopicBuilder;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
+import org.springframework.kafka.core.DefaultKafkaProducerFactory;
+import org.springframework.kafka.core.KafkaAdmin;
 import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.listener.ContainerProperties;
 import org.springframework.kafka.retrytopic.RetryTopicConfiguration;
 import org.springframework.kafka.retrytopic.RetryTopicConfigurationBuilder;
 import org.springframework.retry.backoff.ExponentialBackOffPolicy;
 import org.springframework.retry.policy.SimpleRetryPolicy;
 import org.springframework.retry.support.RetryTemplate;
+import org.springframework.util.ClassUtils;
 
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 @Configuration
+@ConditionalOnKafkaEventBus
 public class EventaKafkaConfig {
 
     @Value("${eventa.kafka.bootstrap-servers}")
@@ -58,10 +86,133 @@ public class EventaKafkaConfig {
     @Value("${eventa.kafka.trusted-packages}")
     private String[] trustedPackages;
 
+    @Value("${eventa.kafka.partitions:3}")
+    private int partitions;
+
+    @Value("${eventa.kafka.replicas:1}")
+    private short replicas;
+
+    @Value("${eventa.kafka.topic-per-aggregate-type:false}")
+    private boolean topicPerAggregateType;
+
+    @Value("${eventa.kafka.filter-unhandled-events:true}")
+    private boolean filterUnhandledEvents;
+
+    @Bean
+    @SuppressWarnings("unchecked")
+    public DefaultKafkaProducerFactoryCustomizer eventaProducerTuning(EventaProperties eventaProperties, EventSerializers eventSerializers) {
+        KafkaProducerProperties producer = eventaProperties.getKafka() != null
+                ? eventaProperties.getKafka().getProducer()
+                : new KafkaProducerProperties();
+        Map<String, Object> configs = producerTuning(producer);
+        EventSerializer eventSerializer = eventSerializers.getConfigured();
+        return producerFactory -> {
+            if (!configs.isEmpty()) {
+                producerFactory.updateConfigs(configs);
+            }
+            if (eventSerializer != null) {
+                ((DefaultKafkaProducerFactory<Object, Object>) producerFactory).setValueSerializerSupplier(
+                        () -> new KafkaEventSerializer(eventSerializer));
+            }
+        };
+    }
+
+    private static Map<String, Object> producerTuning(KafkaProducerProperties producer) {
+        Map<String, Object> configs = new HashMap<>();
+        switch (producer.getPreset()) {
+            case THROUGHPUT -> {
+                configs.put(ProducerConfig.LINGER_MS_CONFIG, 20);
+                configs.put(ProducerConfig.BATCH_SIZE_CONFIG, 256 * 1024);
+                configs.put(ProducerConfig.COMPRESSION_TYPE_CONFIG, "zstd");
+                configs.put(ProducerConfig.BUFFER_MEMORY_CONFIG, 64L * 1024 * 1024);
+                configs.put(ProducerConfig.MAX_IN_FLIGHT_REQUESTS_PER_CONNECTION, 5);
+                configs.put(ProducerConfig.ENABLE_IDEMPOTENCE_CONFIG, true);
+            }
+            case LATENCY -> {
+                configs.put(ProducerConfig.LINGER_MS_CONFIG, 0);
+                configs.put(ProducerConfig.BATCH_SIZE_CONFIG, 16 * 1024);
+                configs.put(ProducerConfig.COMPRESSION_TYPE_CONFIG, "none");
+                configs.put(ProducerConfig.MAX_IN_FLIGHT_REQUESTS_PER_CONNECTION, 5);
+                configs.put(ProducerConfig.ENABLE_IDEMPOTENCE_CONFIG, true);
+            }
+            case NONE -> {
+            }
+        }
+        putIfSet(configs, ProducerConfig.LINGER_MS_CONFIG, producer.getLingerMs());
+        putIfSet(configs, ProducerConfig.BATCH_SIZE_CONFIG, producer.getBatchSize());
+        putIfSet(configs, ProducerConfig.COMPRESSION_TYPE_CONFIG, producer.getCompressionType());
+        putIfSet(configs, ProducerConfig.MAX_IN_FLIGHT_REQUESTS_PER_CONNECTION, producer.getMaxInFlightRequestsPerConnection());
+        putIfSet(configs, ProducerConfig.BUFFER_MEMORY_CONFIG, producer.getBufferMemory());
+        putIfSet(configs, ProducerConfig.ENABLE_IDEMPOTENCE_CONFIG, producer.getEnableIdempotence());
+        putIfSet(configs, ProducerConfig.ACKS_CONFIG, producer.getAcks());
+
+        // idempotent (and transactional) producers only keep ordering with at most 5 requests in flight
+        Object idempotence = configs.get(ProducerConfig.ENABLE_IDEMPOTENCE_CONFIG);
+        Object maxInFlight = configs.get(ProducerConfig.MAX_IN_FLIGHT_REQUESTS_PER_CONNECTION);
+        if (!Boolean.FALSE.equals(idempotence) && maxInFlight instanceof Integer inFlight && inFlight > 5) {
+            throw new RuntimeException("eventa.kafka.producer.max-in-flight-requests-per-connection must be at most 5 with idempotence enabled");
+        }
+        return configs;
+    }
+
+    private static void putIfSet(Map<String, Object> configs, String key, Object value) {
+        if (value != null) {
+            configs.put(key, value);
+        }
+    }
+
+    // records in any EventSerializer format are read whatever this service writes, unhandled types are skipped unparsed
+    @Bean
+    @SuppressWarnings("unchecked")
+    public DefaultKafkaConsumerFactoryCustomizer eventaValueDeserializer(EventSerializers eventSerializers,
+                                                                         EventHandlerRegistry eventHandlerRegistry,
+                                                                         SagaHandlerRegistry sagaHandlerRegistry,
+                                                                         PostProcessor postProcessor) {
+        return consumerFactory -> ((DefaultKafkaConsumerFactory<Object, Object>) consumerFactory).setValueDeserializerSupplier(() -> {
+            KafkaEventDeserializer deserializer = new KafkaEventDeserializer(eventSerializers);
+            return filterUnhandledEvents
+                    // nothing is filtered until the handlers are registered
+                    ? new EventTypeFilteringDeserializer(type -> !postProcessor.isRegistered()
+                            || eventHandlerRegistry.hasHandler(type) || sagaHandlerRegistry.hasHandler(type), deserializer)
+                    : deserializer;
+        });
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "eventa.kafka.listener-mode", havingValue = "batch")
+    @SuppressWarnings("unchecked")
+    public ConcurrentKafkaListenerContainerFactory<Object, Object> eventaBatchListenerContainerFactory(
+            ConcurrentKafkaListenerContainerFactoryConfigurer configurer, ConsumerFactory<?, ?> consumerFactory) {
+        ConcurrentKafkaListenerContainerFactory<Object, Object> factory = new ConcurrentKafkaListenerContainerFactory<>();
+        configurer.configure(factory, (ConsumerFactory<Object, Object>) consumerFactory);
+        factory.setBatchListener(true);
+        // KafkaBatchEventConsumer commits the contiguous offsets itself
+        factory.getContainerProperties().setAckMode(ContainerProperties.AckMode.MANUAL);
+        return factory;
+    }
+
     @Bean
     public NewTopic eventBusTopic() {
-        return TopicBuilder.name(eventBus)
-                .partitions(3)
+        return newTopic(eventBus);
+    }
+
+    // KafkaAdmin creates these with the event bus topic at startup, so no command waits for a topic to be created
+    @Bean
+    public KafkaAdmin.NewTopics aggregateTopics(ApplicationContext applicationContext) {
+        if (!topicPerAggregateType) {
+            return new KafkaAdmin.NewTopics();
+        }
+        return new KafkaAdmin.NewTopics(Arrays.stream(applicationContext.getBeanNamesForAnnotation(Aggregate.class))
+                .map(applicationContext::getType)
+                .filter(Objects::nonNull)
+                .map(type -> newTopic(KafkaEventProducer.aggregateTopic(eventBus, ClassUtils.getUserClass(type).getSimpleName())))
+                .toArray(NewTopic[]::new));
+    }
+
+    private NewTopic newTopic(String name) {
+        return TopicBuilder.name(name)
+                .partitions(partitions)
+                .replicas(replicas)
                 .config("cleanup.policy", "delete")
                 .build();
     }
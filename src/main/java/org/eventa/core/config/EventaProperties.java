@@ -45,4 +45,18 @@ public class EventaProperties {
     private KafkaProperties kafka;
     @NestedConfigurationProperty
     private CuratorProperties curator;
+    @NestedConfigurationProperty
+    private OutboxProperties outbox = new OutboxProperties();
+    @NestedConfigurationProperty
+    private AggregateCacheProperties aggregateCache = new AggregateCacheProperties();
+    @NestedConfigurationProperty
+    private CommandProperties command = new CommandProperties();
+    @NestedConfigurationProperty
+    private TrackingProperties tracking = new TrackingProperties();
+    @NestedConfigurationProperty
+    private EventStoreProperties eventStore = new EventStoreProperties();
+    @NestedConfigurationProperty
+    private EventBusProperties eventBus = new EventBusProperties();
+    @NestedConfigurationProperty
+    private SerializationProperties serialization = new SerializationProperties();
 }
@@ -29,6 +29,7 @@ package org.eventa.core.config;
 import lombok.Getter;
 import lombok.Setter;
 import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.NestedConfigurationProperty;
 
 @Getter
 @Setter
@@ -39,4 +40,23 @@ public class KafkaProperties {
     private String bootstrapServers;
     private int concurrency;
     private String[] trustedPackages;
+    private int partitions = 3;
+    private short replicas = 1;
+    // publish to <event-bus>.<AggregateType> instead of a single event bus topic
+    private boolean topicPerAggregateType = false;
+    // RECORD hands records to the event dispatcher one by one, BATCH polls batches and fans them out by aggregate id
+    private ListenerMode listenerMode = ListenerMode.RECORD;
+    // BATCH mode only: ordered worker lanes, records with the same key always share a lane
+    private int consumerWorkers = Runtime.getRuntime().availableProcessors();
+    // RECORD mode only: threads handling events, and the in-flight events at which the listener pauses / resumes
+    private int eventThreads = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+    private int dispatchHighWatermark = 1000;
+    private int dispatchLowWatermark = 250;
+    @NestedConfigurationProperty
+    private KafkaProducerProperties producer = new KafkaProducerProperties();
+
+    public enum ListenerMode {
+        RECORD,
+        BATCH
+    }
 }
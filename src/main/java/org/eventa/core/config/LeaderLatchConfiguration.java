@@ -34,10 +34,13 @@ import org.apache.curator.retry.ExponentialBackoffRetry;
 import org.eventa.core.registry.LeaderHandlerRegistry;
 import org.eventa.core.registry.NotLeaderHandlerRegistry;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
 import org.springframework.context.ApplicationContext;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Conditional;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.event.EventListener;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 
 import java.lang.reflect.InvocationTargetException;
@@ -66,6 +69,7 @@ public class LeaderLatchConfiguration {
     }
 
     @Bean(initMethod = "start", destroyMethod = "close")
+    @ConditionalOnProperty(name = "eventa.curator.enabled", havingValue = "true", matchIfMissing = true)
     @ConditionalOnMissingBean
     public CuratorFramework curatorFramework() {
         return CuratorFrameworkFactory.newClient(eventaProperties.getCurator().getHostname(),
@@ -74,6 +78,7 @@ public class LeaderLatchConfiguration {
     }
 
     @Bean
+    @ConditionalOnProperty(name = "eventa.curator.enabled", havingValue = "true", matchIfMissing = true)
     @ConditionalOnMissingBean
     public LeaderLatch leaderLatch(CuratorFramework curatorFramework, ApplicationContext applicationContext) {
         LeaderLatch leaderLatch = new LeaderLatch(curatorFramework, "/leader/latch");
@@ -97,6 +102,14 @@ public class LeaderLatchConfiguration {
         return leaderLatch;
     }
 
+    // without ZooKeeper there is no election, the single node leads from startup
+    @EventListener(ApplicationReadyEvent.class)
+    public void leadWithoutCurator(ApplicationReadyEvent event) {
+        if (event.getApplicationContext().getBeanProvider(LeaderLatch.class).getIfAvailable() == null) {
+            handleLeaderChange(true, event.getApplicationContext());
+        }
+    }
+
     private void handleLeaderChange(boolean isLeader, ApplicationContext applicationContext) {
         if (isLeader) {
             for (Class<?> handlerClass : leaderHandlerRegistry.getRegisteredClasses()) {
@@ -0,0 +1,125 @@
+/*
+ *
+ *  * MIT License
+ *  *
+ *  * Copyright (c) 2024 Partha Sutradhar.
+ *  *
+ *  * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  * of this software and associated documentation files (the "Software"), to deal
+ *  * in the Software without restriction, including without limitation the rights
+ *  * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  * copies of the Software, and to permit persons to whom the Software is
+ *  * furnished to do so, subject to the following conditions:
+ *  *
+ *  * The above copyright notice and this permission notice shall be included in all
+ *  * copies or substantial portions of the Software.
+ *  *
+ *  * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  * SOFTWARE.
+ *
+ */
+
+package org.eventa.core.consumer;
+
+import lombok.extern.log4j.Log4j2;
+import org.eventa.core.config.ConditionalOnKafkaEventBus;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+// Bounds the events handed to the event executor but not yet handled. Reaching the high watermark pauses the
+// listener container, its consumers keep polling (and heart-beating) without fetching records until the
+// in-flight count has drained to the low watermark. A pause takes effect at the next poll, the records a consumer
+// already fetched are still dispatched: up to max.poll.records x eventa.kafka.concurrency events above the high
+// watermark sit in the executor queue, which is unbounded for that reason.
+@Log4j2
+@Component
+@ConditionalOnKafkaEventBus
+public class DispatchBackpressure {
+
+    public static final String LISTENER_ID = "eventaEventListener";
+
+    private final KafkaListenerEndpointRegistry kafkaListenerEndpointRegistry;
+    private final int highWatermark;
+    private final int lowWatermark;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final LongAdder pauses = new LongAdder();
+    private final LongAdder pausedNanos = new LongAdder();
+    private boolean paused;
+    private long pausedAt;
+
+    public DispatchBackpressure(KafkaListenerEndpointRegistry kafkaListenerEndpointRegistry,
+                                @Value("${eventa.kafka.dispatch-high-watermark:1000}") int highWatermark,
+                                @Value("${eventa.kafka.dispatch-low-watermark:250}") int lowWatermark) {
+        this.kafkaListenerEndpointRegistry = kafkaListenerEndpointRegistry;
+        this.highWatermark = Math.max(1, highWatermark);
+        this.lowWatermark = Math.max(0, Math.min(lowWatermark, this.highWatermark - 1));
+    }
+
+    public void submitted() {
+        if (inFlight.incrementAndGet() >= highWatermark) {
+            pause();
+        }
+    }
+
+    public void completed() {
+        if (inFlight.decrementAndGet() <= lowWatermark) {
+            resume();
+        }
+    }
+
+    private synchronized void pause() {
+        if (paused || inFlight.get() < highWatermark) {
+            return;
+        }
+        MessageListenerContainer container = kafkaListenerEndpointRegistry.getListenerContainer(LISTENER_ID);
+        if (container == null) {
+            return;
+        }
+        container.pause();
+        paused = true;
+        pausedAt = System.nanoTime();
+        pauses.increment();
+        log.debug("Paused event listener, {} events in flight", inFlight.get());
+    }
+
+    private synchronized void resume() {
+        if (!paused || inFlight.get() > lowWatermark) {
+            return;
+        }
+        MessageListenerContainer container = kafkaListenerEndpointRegistry.getListenerContainer(LISTENER_ID);
+        if (container != null) {
+            container.resume();
+        }
+        paused = false;
+        pausedNanos.add(System.nanoTime() - pausedAt);
+        log.debug("Resumed event listener, {} events in flight", inFlight.get());
+    }
+
+    // plain counters like AggregateLockManager.getStats(), nothing is registered with a metrics library
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    public synchronized boolean isPaused() {
+        return paused;
+    }
+
+    public long getPauseCount() {
+        return pauses.sum();
+    }
+
+    // includes the current pause when the listener is paused right now
+    public synchronized long getTotalPausedNanos() {
+        return pausedNanos.sum() + (paused ? System.nanoTime() - pausedAt : 0);
+    }
+}
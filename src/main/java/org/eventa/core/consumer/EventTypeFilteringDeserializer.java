@@ -0,0 +1,103 @@
+/*
+ *
+ *  * MIT License
+ *  *
+ *  * Copyright (c) 2024 Partha Sutradhar.
+ *  *
+ *  * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  * of this software and associated documentation files (the "Software"), to deal
+ *  * in the Software without restriction, including without limitation the rights
+ *  * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  * copies of the Software, and to permit persons to whom the Software is
+ *  * furnished to do so, subject to the following conditions:
+ *  *
+ *  * The above copyright notice and this permission notice shall be included in all
+ *  * copies or substantial portions of the Software.
+ *  *
+ *  * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  * SOFTWARE.
+ *
+ */
+
+package org.eventa.core.consumer;
+
+import org.apache.kafka.common.KafkaException;
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.serialization.Deserializer;
+import org.apache.kafka.common.utils.Utils;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.function.Predicate;
+
+// Wraps the configured value deserializer and returns null, without parsing the payload, for records whose
+// event type header names a type nobody in this service handles. Records without the header are always parsed.
+// The predicate is asked for every record, nothing is cached: an answer given before the handlers were registered
+// would stick.
+public class EventTypeFilteringDeserializer implements Deserializer<Object> {
+
+    public static final String EVENT_TYPE_HEADER = "event.type";
+
+    private final Predicate<String> handledType;
+    private Deserializer<Object> delegate;
+
+    public EventTypeFilteringDeserializer(Predicate<String> handledType) {
+        this.handledType = handledType;
+    }
+
+    public EventTypeFilteringDeserializer(Predicate<String> handledType, Deserializer<Object> delegate) {
+        this.handledType = handledType;
+        this.delegate = delegate;
+    }
+
+    @Override
+    public void configure(Map<String, ?> configs, boolean isKey) {
+        if (delegate == null) {
+            delegate = configuredValueDeserializer(configs);
+        }
+        delegate.configure(configs, isKey);
+    }
+
+    @SuppressWarnings("unchecked")
+    static Deserializer<Object> configuredValueDeserializer(Map<String, ?> configs) {
+        Object configured = configs.get(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG);
+        try {
+            if (configured instanceof Class<?> type) {
+                return (Deserializer<Object>) Utils.newInstance(type);
+            } else if (configured instanceof String className) {
+                return Utils.newInstance(className, Deserializer.class);
+            }
+            throw new KafkaException("No value deserializer configured");
+        } catch (ClassNotFoundException e) {
+            throw new KafkaException("Value deserializer " + configured + " not found", e);
+        }
+    }
+
+    @Override
+    public Object deserialize(String topic, byte[] data) {
+        return delegate.deserialize(topic, data);
+    }
+
+    @Override
+    public Object deserialize(String topic, Headers headers, byte[] data) {
+        Header eventType = headers != null ? headers.lastHeader(EVENT_TYPE_HEADER) : null;
+        if (eventType != null && !handledType.test(new String(eventType.value(), StandardCharsets.UTF_8))) {
+            return null;
+        }
+        return delegate.deserialize(topic, headers, data);
+    }
+
+    @Override
+    public void close() {
+        if (delegate != null) {
+            delegate.close();
+        }
+    }
+}
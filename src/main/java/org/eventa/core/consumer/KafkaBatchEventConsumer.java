@@ -0,0 +1,163 @@
+/*
+ *
+ *  * MIT License
+ *  *
+ *  * Copyright (c) 2024 Partha Sutradhar.
+ *  *
+ *  * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  * of this software and associated documentation files (the "Software"), to deal
+ *  * in the Software without restriction, including without limitation the rights
+ *  * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  * copies of the Software, and to permit persons to whom the Software is
+ *  * furnished to do so, subject to the following conditions:
+ *  *
+ *  * The above copyright notice and this permission notice shall be included in all
+ *  * copies or substantial portions of the Software.
+ *  *
+ *  * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  * SOFTWARE.
+ *
+ */
+
+package org.eventa.core.consumer;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.log4j.Log4j2;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.eventa.core.config.ConditionalOnKafkaEventBus;
+import org.eventa.core.dispatcher.EventDispatcher;
+import org.eventa.core.events.BaseEvent;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Batch listener: records of one poll are spread over ordered worker lanes by key, so one aggregate's events
+// stay in order while different aggregates are handled in parallel. After the batch only the highest contiguous
+// handled offset of each partition is committed, a partition with a failed record is rewound to that record.
+@Log4j2
+@Service
+@ConditionalOnProperty(name = "eventa.kafka.listener-mode", havingValue = "batch")
+@ConditionalOnKafkaEventBus
+public class KafkaBatchEventConsumer {
+
+    private final EventDispatcher eventDispatcher;
+    private final ExecutorService[] lanes;
+
+    public KafkaBatchEventConsumer(EventDispatcher eventDispatcher,
+                                   @Value("${eventa.kafka.consumer-workers:0}") int consumerWorkers) {
+        this.eventDispatcher = eventDispatcher;
+        int workers = consumerWorkers > 0 ? consumerWorkers : Runtime.getRuntime().availableProcessors();
+        this.lanes = new ExecutorService[workers];
+        for (int i = 0; i < workers; i++) {
+            String name = "eventa-consumer-lane-" + i;
+            this.lanes[i] = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, name);
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    @KafkaListener(topicPattern = "${eventa.kafka.event-bus}(\\..+)?", concurrency = "${eventa.kafka.concurrency}", containerFactory = "eventaBatchListenerContainerFactory")
+    public void consume(List<ConsumerRecord<UUID, BaseEvent>> records, Consumer<?, ?> consumer) {
+        if (records.isEmpty()) {
+            return;
+        }
+        Map<Integer, List<Integer>> byLane = new LinkedHashMap<>();
+        for (int i = 0; i < records.size(); i++) {
+            byLane.computeIfAbsent(lane(records.get(i)), key -> new ArrayList<>()).add(i);
+        }
+
+        // one outcome per record, records left null were not reached because an earlier one in the lane failed
+        @SuppressWarnings("unchecked")
+        CompletableFuture<Void>[] outcomes = new CompletableFuture[records.size()];
+        List<CompletableFuture<Void>> work = new ArrayList<>(byLane.size());
+        byLane.forEach((lane, positions) -> work.add(CompletableFuture.runAsync(() -> {
+            for (int position : positions) {
+                ConsumerRecord<UUID, BaseEvent> record = records.get(position);
+                try {
+                    outcomes[position] = record.value() != null
+                            ? eventDispatcher.handleDeferred(record.value())
+                            : CompletableFuture.completedFuture(null);
+                } catch (Exception e) {
+                    // later records of the lane may belong to the same aggregate, leave them for redelivery
+                    log.error("Error processing event: {}, Offset {}", record.value(), record.offset(), e);
+                    return;
+                }
+            }
+        }, lanes[lane])));
+        // joining makes the lane writes to outcomes visible to the listener thread
+        CompletableFuture.allOf(work.toArray(CompletableFuture[]::new)).join();
+
+        // events of batch @EventHandler methods complete when their micro-batch is flushed
+        boolean[] handled = new boolean[records.size()];
+        for (int i = 0; i < outcomes.length; i++) {
+            if (outcomes[i] == null) {
+                continue;
+            }
+            try {
+                outcomes[i].join();
+                handled[i] = true;
+            } catch (Exception e) {
+                log.error("Error processing event: {}, Offset {}", records.get(i).value(), records.get(i).offset(), e);
+            }
+        }
+
+        commitContiguous(records, handled, consumer);
+    }
+
+    private void commitContiguous(List<ConsumerRecord<UUID, BaseEvent>> records, boolean[] handled, Consumer<?, ?> consumer) {
+        Map<TopicPartition, Long> committable = new HashMap<>();
+        Map<TopicPartition, Long> rewind = new HashMap<>();
+        // records of a partition arrive in offset order within the batch
+        for (int i = 0; i < records.size(); i++) {
+            ConsumerRecord<UUID, BaseEvent> record = records.get(i);
+            TopicPartition partition = new TopicPartition(record.topic(), record.partition());
+            if (rewind.containsKey(partition)) {
+                continue;
+            }
+            if (handled[i]) {
+                committable.put(partition, record.offset() + 1);
+            } else {
+                rewind.put(partition, record.offset());
+            }
+        }
+        if (!committable.isEmpty()) {
+            Map<TopicPartition, OffsetAndMetadata> offsets = new HashMap<>();
+            committable.forEach((partition, offset) -> offsets.put(partition, new OffsetAndMetadata(offset)));
+            consumer.commitSync(offsets);
+        }
+        rewind.forEach(consumer::seek);
+    }
+
+    private int lane(ConsumerRecord<UUID, BaseEvent> record) {
+        Object key = record.key() != null ? record.key() : record.value() != null ? record.value().getId() : null;
+        return key == null ? Math.floorMod(record.partition(), lanes.length) : Math.floorMod(key.hashCode(), lanes.length);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        for (ExecutorService lane : lanes) {
+            lane.shutdown();
+        }
+    }
+}
@@ -28,7 +28,9 @@ package org.eventa.core.consumer;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.log4j.Log4j2;
+import org.eventa.core.config.ConditionalOnKafkaEventBus;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.core.annotation.AliasFor;
 import org.springframework.core.task.TaskExecutor;
 import org.springframework.kafka.annotation.DltHandler;
@@ -38,6 +40,7 @@ import org.springframework.kafka.annotation.TopicPartition;
 import org.springframework.kafka.support.Acknowledgment;
 import org.springframework.kafka.support.KafkaHeaders;
 import org.springframework.messaging.handler.annotation.Header;
+import org.springframework.messaging.handler.annotation.Payload;
 import org.springframework.retry.annotation.Backoff;
 import org.springframework.stereotype.Service;
 import org.eventa.core.events.BaseEvent;
@@ -48,17 +51,33 @@ import java.util.concurrent.CompletableFuture;
 @Log4j2
 @Service
 @RequiredArgsConstructor
+@ConditionalOnProperty(name = "eventa.kafka.listener-mode", havingValue = "record", matchIfMissing = true)
+@ConditionalOnKafkaEventBus
 public class KafkaEventConsumer implements EventConsumer {
 
     private final EventDispatcher eventDispatcher;
+    private final DispatchBackpressure dispatchBackpressure;
 
     @Override
-    @KafkaListener(topicPattern = "${eventa.kafka.event-bus}", concurrency = "${eventa.kafka.concurrency}", containerFactory = "kafkaListenerContainerFactory")
-    public void consume(BaseEvent baseEvent, @Header(KafkaHeaders.OFFSET) String offset, Acknowledgment ack) throws Exception {
+    @KafkaListener(id = DispatchBackpressure.LISTENER_ID, idIsGroup = false, topicPattern = "${eventa.kafka.event-bus}(\\..+)?", concurrency = "${eventa.kafka.concurrency}", containerFactory = "kafkaListenerContainerFactory")
+    public void consume(@Payload(required = false) BaseEvent baseEvent, @Header(KafkaHeaders.OFFSET) String offset, Acknowledgment ack) throws Exception {
+        if (baseEvent == null) {
+            // filtered by EventTypeFilteringDeserializer, nothing here handles this event type
+            ack.acknowledge();
+            return;
+        }
         log.info("Received event: {}, Offset {}", baseEvent, offset);
         log.info("Thread Id : {}", Thread.currentThread().getId());
-        CompletableFuture<Void> future = this.eventDispatcher.dispatch(baseEvent);
+        dispatchBackpressure.submitted();
+        CompletableFuture<Void> future;
+        try {
+            future = this.eventDispatcher.dispatch(baseEvent);
+        } catch (Exception e) {
+            dispatchBackpressure.completed();
+            throw e;
+        }
         future.whenComplete((result, ex) -> {
+            dispatchBackpressure.completed();
             if (ex == null) {
                 log.debug("Successfully processed event: {}", baseEvent);
                 ack.acknowledge();
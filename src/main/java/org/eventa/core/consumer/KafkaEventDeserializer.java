@@ -0,0 +1,85 @@
+/*
+ *
+ *  * MIT License
+ *  *
+ *  * Copyright (c) 2024 Partha Sutradhar.
+ *  *
+ *  * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  * of this software and associated documentation files (the "Software"), to deal
+ *  * in the Software without restriction, including without limitation the rights
+ *  * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  * copies of the Software, and to permit persons to whom the Software is
+ *  * furnished to do so, subject to the following conditions:
+ *  *
+ *  * The above copyright notice and this permission notice shall be included in all
+ *  * copies or substantial portions of the Software.
+ *  *
+ *  * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  * SOFTWARE.
+ *
+ */
+
+package org.eventa.core.consumer;
+
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.serialization.Deserializer;
+import org.eventa.core.events.BaseEvent;
+import org.eventa.core.serializer.EventSerializers;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+// Reads records written by KafkaEventSerializer with the EventSerializer their format header names. Records
+// without it, published before a format was set or by other producers, go to the configured value deserializer.
+public class KafkaEventDeserializer implements Deserializer<Object> {
+
+    public static final String EVENT_FORMAT_HEADER = "event.format";
+    // global position of the event in the event store, tracking processors compare it with their handover position
+    public static final String EVENT_POSITION_HEADER = "event.position";
+
+    private final EventSerializers eventSerializers;
+    private Deserializer<Object> delegate;
+
+    public KafkaEventDeserializer(EventSerializers eventSerializers) {
+        this.eventSerializers = eventSerializers;
+    }
+
+    @Override
+    public void configure(Map<String, ?> configs, boolean isKey) {
+        delegate = EventTypeFilteringDeserializer.configuredValueDeserializer(configs);
+        delegate.configure(configs, isKey);
+    }
+
+    @Override
+    public Object deserialize(String topic, byte[] data) {
+        return delegate.deserialize(topic, data);
+    }
+
+    @Override
+    public Object deserialize(String topic, Headers headers, byte[] data) {
+        Header format = headers != null ? headers.lastHeader(EVENT_FORMAT_HEADER) : null;
+        Header eventType = headers != null ? headers.lastHeader(EventTypeFilteringDeserializer.EVENT_TYPE_HEADER) : null;
+        Object event = format == null || eventType == null || data == null
+                ? delegate.deserialize(topic, headers, data)
+                : eventSerializers.deserialize(new String(format.value(), StandardCharsets.UTF_8),
+                        new String(eventType.value(), StandardCharsets.UTF_8), data);
+        Header position = headers != null ? headers.lastHeader(EVENT_POSITION_HEADER) : null;
+        if (event instanceof BaseEvent baseEvent && position != null) {
+            baseEvent.setPosition(Long.valueOf(new String(position.value(), StandardCharsets.UTF_8)));
+        }
+        return event;
+    }
+
+    @Override
+    public void close() {
+        if (delegate != null) {
+            delegate.close();
+        }
+    }
+}
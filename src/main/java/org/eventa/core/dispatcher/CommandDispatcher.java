@@ -37,5 +37,8 @@ import java.util.function.BiConsumer;
 public interface CommandDispatcher {
     <T extends BaseCommand> String send(T command) throws Exception;
 
+    // returns without blocking, the future completes once the events are stored and published
+    <T extends BaseCommand> CompletableFuture<String> sendAsync(T command);
+
     <T extends BaseCommand> void send(T command, BiConsumer<CommandMessage<T>, CommandResultMessage<?>> callback) throws Exception;
 }
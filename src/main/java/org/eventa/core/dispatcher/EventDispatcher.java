@@ -33,4 +33,10 @@ import java.util.concurrent.CompletableFuture;
 
 public interface EventDispatcher {
     CompletableFuture<Void> dispatch(BaseEvent baseEvent) throws Exception;
+
+    // runs the event and saga handlers on the calling thread
+    void handle(BaseEvent baseEvent);
+
+    // like handle, but an event for a batch @EventHandler is only queued, the future completes once its batch ran
+    CompletableFuture<Void> handleDeferred(BaseEvent baseEvent);
 }
@@ -0,0 +1,171 @@
+/*
+ *
+ *  * MIT License
+ *  *
+ *  * Copyright (c) 2024 Partha Sutradhar.
+ *  *
+ *  * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  * of this software and associated documentation files (the "Software"), to deal
+ *  * in the Software without restriction, including without limitation the rights
+ *  * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  * copies of the Software, and to permit persons to whom the Software is
+ *  * furnished to do so, subject to the following conditions:
+ *  *
+ *  * The above copyright notice and this permission notice shall be included in all
+ *  * copies or substantial portions of the Software.
+ *  *
+ *  * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  * SOFTWARE.
+ *
+ */
+
+package org.eventa.core.dispatcher.impl;
+
+import lombok.extern.log4j.Log4j2;
+import org.eventa.core.aggregates.AggregateRoot;
+import org.eventa.core.commands.BaseCommand;
+import org.eventa.core.registry.HandlerInvoker;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// One queue per aggregate id, at most one drain per queue runs at a time so commands of an aggregate
+// are handled by a single writer without blocking the callers. A drain hands queued commands to the
+// processor in batches of up to maxBatchSize, optionally waiting batchWindowMs for a batch to fill.
+@Log4j2
+class AggregateMailboxes {
+
+    interface MailboxProcessor {
+        // handles the commands in order and completes each result, returns the instance to reuse for the next batch or null
+        AggregateRoot process(List<PendingCommand> batch, AggregateRoot loaded);
+
+        void release(AggregateRoot aggregate);
+    }
+
+    record PendingCommand(BaseCommand command, HandlerInvoker handler, CompletableFuture<String> result) {
+    }
+
+    private final ConcurrentHashMap<UUID, Mailbox> mailboxes = new ConcurrentHashMap<>();
+    private final Executor executor;
+    private final MailboxProcessor processor;
+    private final int maxBatchSize;
+    private final long batchWindowMs;
+    private final ScheduledExecutorService batchWindowScheduler;
+
+    AggregateMailboxes(Executor executor, MailboxProcessor processor, int maxBatchSize, long batchWindowMs) {
+        this.executor = executor;
+        this.processor = processor;
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+        this.batchWindowMs = batchWindowMs;
+        this.batchWindowScheduler = batchWindowMs > 0 ? Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "eventa-command-batch");
+            thread.setDaemon(true);
+            return thread;
+        }) : null;
+    }
+
+    CompletableFuture<String> submit(BaseCommand command, HandlerInvoker handler) {
+        PendingCommand pendingCommand = new PendingCommand(command, handler, new CompletableFuture<>());
+        // enqueue and mailbox removal both run under the map bin lock, so a command never lands in a dropped mailbox
+        Mailbox mailbox = mailboxes.compute(command.getId(), (id, existing) -> {
+            Mailbox target = existing != null ? existing : new Mailbox(id);
+            target.queue.add(pendingCommand);
+            return target;
+        });
+        schedule(mailbox);
+        return pendingCommand.result();
+    }
+
+    int size() {
+        return mailboxes.size();
+    }
+
+    private void schedule(Mailbox mailbox) {
+        if (mailbox.scheduled.compareAndSet(false, true)) {
+            try {
+                if (batchWindowScheduler != null) {
+                    batchWindowScheduler.schedule(() -> executeDrain(mailbox), batchWindowMs, TimeUnit.MILLISECONDS);
+                } else {
+                    executor.execute(() -> drain(mailbox));
+                }
+            } catch (RuntimeException e) {
+                mailbox.scheduled.set(false);
+                PendingCommand pendingCommand;
+                while ((pendingCommand = mailbox.queue.poll()) != null) {
+                    pendingCommand.result().completeExceptionally(e);
+                }
+                throw e;
+            }
+        }
+    }
+
+    private void executeDrain(Mailbox mailbox) {
+        try {
+            executor.execute(() -> drain(mailbox));
+        } catch (RuntimeException e) {
+            mailbox.scheduled.set(false);
+            PendingCommand pendingCommand;
+            while ((pendingCommand = mailbox.queue.poll()) != null) {
+                pendingCommand.result().completeExceptionally(e);
+            }
+        }
+    }
+
+    private void drain(Mailbox mailbox) {
+        AggregateRoot loaded = null;
+        try {
+            List<PendingCommand> batch = new ArrayList<>(maxBatchSize);
+            while (true) {
+                PendingCommand pendingCommand;
+                while (batch.size() < maxBatchSize && (pendingCommand = mailbox.queue.poll()) != null) {
+                    batch.add(pendingCommand);
+                }
+                if (batch.isEmpty()) {
+                    break;
+                }
+                try {
+                    loaded = processor.process(batch, loaded);
+                } catch (Throwable e) {
+                    loaded = null;
+                    batch.forEach(pending -> pending.result().completeExceptionally(e));
+                }
+                batch.clear();
+            }
+            if (loaded != null) {
+                processor.release(loaded);
+            }
+        } finally {
+            mailbox.scheduled.set(false);
+            mailboxes.computeIfPresent(mailbox.aggregateId,
+                    (id, current) -> current == mailbox && current.queue.isEmpty() && !current.scheduled.get() ? null : current);
+            if (!mailbox.queue.isEmpty()) {
+                schedule(mailbox);
+            }
+        }
+    }
+
+    private static final class Mailbox {
+        private final UUID aggregateId;
+        private final Queue<PendingCommand> queue = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+
+        private Mailbox(UUID aggregateId) {
+            this.aggregateId = aggregateId;
+        }
+    }
+}
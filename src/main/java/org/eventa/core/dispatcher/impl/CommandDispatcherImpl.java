@@ -28,28 +28,34 @@ package org.eventa.core.dispatcher.impl;
 
 import lombok.extern.log4j.Log4j2;
 import org.eventa.core.aggregates.AggregateRoot;
-import org.eventa.core.cache.CacheConcurrentHashMap;
 import org.eventa.core.commands.BaseCommand;
 import org.eventa.core.commands.CommandMessage;
 import org.eventa.core.commands.CommandResultMessage;
+import org.eventa.core.config.CommandProperties.DispatchMode;
+import org.eventa.core.config.EventaProperties;
 import org.eventa.core.dispatcher.CommandDispatcher;
+import org.eventa.core.dispatcher.impl.AggregateMailboxes.PendingCommand;
 import org.eventa.core.events.BaseEvent;
 import org.eventa.core.eventstore.EventStore;
 import org.eventa.core.factory.AggregateFactory;
 import org.eventa.core.interceptor.CommandInterceptorRegisterer;
+import org.eventa.core.lock.AggregateLockManager;
+import org.eventa.core.lock.AggregateLockManager.AggregateLock;
 import org.eventa.core.registry.CommandHandlerRegistry;
-import org.eventa.core.repository.SnapshotRepository;
+import org.eventa.core.registry.HandlerInvoker;
+import org.eventa.core.snapshot.SnapshotManager;
 import org.eventa.core.streotype.CommandHandler;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Component;
+import org.springframework.util.ClassUtils;
 
-import java.lang.reflect.Method;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.TimeUnit;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
 import java.util.function.BiConsumer;
+import java.util.function.Function;
 
 @Log4j2
 @Component
@@ -59,83 +65,242 @@ public class CommandDispatcherImpl implements CommandDispatcher {
     private final CommandHandlerRegistry commandHandlerRegistry;
     private final AggregateFactory aggregateFactory;
     private final EventStore eventStore;
-    private final SnapshotRepository snapshotRepository;
-    private final CacheConcurrentHashMap<UUID, Lock> locks = new CacheConcurrentHashMap<>( 10); // LRUCache
+    private final SnapshotManager snapshotManager;
+    private final AggregateLockManager aggregateLockManager;
+    private final AggregateMailboxes aggregateMailboxes;
+    private final ExecutorService commandExecutor;
+    private final boolean mailboxMode;
 
     public CommandDispatcherImpl(CommandInterceptorRegisterer commandInterceptorRegisterer,
                                  CommandHandlerRegistry commandHandlerRegistry,
                                  AggregateFactory aggregateFactory,
                                  EventStore eventStore,
-                                 SnapshotRepository snapshotRepository) {
+                                 SnapshotManager snapshotManager,
+                                 AggregateLockManager aggregateLockManager,
+                                 EventaProperties eventaProperties,
+                                 @Qualifier("eventaCommandExecutor") ExecutorService commandExecutor) {
         this.commandInterceptorRegisterer = commandInterceptorRegisterer;
         this.commandHandlerRegistry = commandHandlerRegistry;
         this.aggregateFactory = aggregateFactory;
         this.eventStore = eventStore;
-        this.snapshotRepository = snapshotRepository;
-    }
+        this.snapshotManager = snapshotManager;
+        this.aggregateLockManager = aggregateLockManager;
+        this.commandExecutor = commandExecutor;
+        this.mailboxMode = eventaProperties.getCommand().getMode() == DispatchMode.MAILBOX;
+        this.aggregateMailboxes = new AggregateMailboxes(commandExecutor, new AggregateMailboxes.MailboxProcessor() {
+            @Override
+            public AggregateRoot process(List<PendingCommand> batch, AggregateRoot loaded) {
+                return processBatch(batch, loaded);
+            }
 
-    private Lock getLock(UUID aggregateId) {
-        return locks.computeIfAbsent(aggregateId, id -> new ReentrantLock());
+            @Override
+            public void release(AggregateRoot aggregate) {
+                aggregateFactory.release(aggregate);
+            }
+        }, eventaProperties.getCommand().getMaxBatchSize(), eventaProperties.getCommand().getBatchWindowMs());
     }
 
     @Override
     public <T extends BaseCommand> String send(T command) throws Exception {
         commandInterceptorRegisterer.getCommandInterceptors().forEach(commandInterceptor -> commandInterceptor.preHandle(command));
-        Method commandHandlerMethod = commandHandlerRegistry.getHandler(command.getClass());
+        HandlerInvoker commandHandler = commandHandlerRegistry.getInvoker(command.getClass());
 
-        if (commandHandlerMethod != null) {
-            Class<?> aggregateClass = commandHandlerMethod.getDeclaringClass();
-            UUID aggregateId = command.getId();
-            Lock lock = getLock(aggregateId);
-            lock.lock();
-            try {
-                AggregateRoot aggregate = aggregateFactory.loadAggregate(aggregateId, aggregateClass.asSubclass(AggregateRoot.class), commandHandlerMethod.getAnnotation(CommandHandler.class).constructor());
-                commandHandlerMethod.invoke(aggregate, command);
-                List<BaseEvent> uncommittedChanges = aggregate.getUncommittedChanges();
-                CompletableFuture<String> future = eventStore.saveEvents(aggregateId, aggregateClass.getSimpleName(), uncommittedChanges, aggregate.getVersion(), commandHandlerMethod.getAnnotation(CommandHandler.class).constructor());
-                aggregate.markChangesAsCommitted();
-                commandInterceptorRegisterer.getCommandInterceptors().forEach(commandInterceptor -> commandInterceptor.postHandle(command));
-                return future.join();
-            } finally {
-                lock.unlock();
-            }
+        if (commandHandler != null) {
+            // locking mode stays on the caller thread, the lock is released before waiting for the Kafka ack
+            CompletableFuture<String> future = mailboxMode
+                    ? aggregateMailboxes.submit(command, commandHandler)
+                    : dispatchLocked(command, commandHandler);
+            String result = join(future);
+            commandInterceptorRegisterer.getCommandInterceptors().forEach(commandInterceptor -> commandInterceptor.postHandle(command));
+            return result;
         }
         return null;
     }
 
     @Override
-    public <T extends BaseCommand> void send(T command, BiConsumer<CommandMessage<T>, CommandResultMessage<?>> callback) throws Exception {
+    public <T extends BaseCommand> CompletableFuture<String> sendAsync(T command) {
         commandInterceptorRegisterer.getCommandInterceptors().forEach(commandInterceptor -> commandInterceptor.preHandle(command));
-        Method commandHandlerMethod = commandHandlerRegistry.getHandler(command.getClass());
+        HandlerInvoker commandHandler = commandHandlerRegistry.getInvoker(command.getClass());
 
-        if (commandHandlerMethod != null) {
-            CompletableFuture.runAsync(() -> {
-                Lock lock = null;
+        if (commandHandler == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        CompletableFuture<String> future;
+        if (mailboxMode) {
+            future = aggregateMailboxes.submit(command, commandHandler);
+        } else {
+            future = CompletableFuture.supplyAsync(() -> {
                 try {
-                    Class<?> aggregateClass = commandHandlerMethod.getDeclaringClass();
-                    UUID aggregateId = command.getId();
-                    lock = getLock(aggregateId);
-                    lock.lock();
+                    return dispatchLocked(command, commandHandler);
+                } catch (Exception e) {
+                    throw new CompletionException(e);
+                }
+            }, commandExecutor).thenCompose(Function.identity());
+        }
+        CompletableFuture<String> result = new CompletableFuture<>();
+        future.whenComplete((value, ex) -> {
+            if (ex != null) {
+                result.completeExceptionally(unwrap(ex));
+                return;
+            }
+            commandInterceptorRegisterer.getCommandInterceptors().forEach(commandInterceptor -> commandInterceptor.postHandle(command));
+            result.complete(value);
+        });
+        return result;
+    }
 
-                    AggregateRoot aggregate = aggregateFactory.loadAggregate(aggregateId, aggregateClass.asSubclass(AggregateRoot.class), commandHandlerMethod.getAnnotation(CommandHandler.class).constructor());
-                    commandHandlerMethod.invoke(aggregate, command);
+    @Override
+    public <T extends BaseCommand> void send(T command, BiConsumer<CommandMessage<T>, CommandResultMessage<?>> callback) throws Exception {
+        sendAsync(command).whenComplete((result, ex) -> {
+            if (ex == null) {
+                callback.accept(new CommandMessage<>(command), new CommandResultMessage<>(null));
+            } else {
+                callback.accept(new CommandMessage<>(command), new CommandResultMessage<>(ex));
+            }
+        });
+    }
 
-                    List<BaseEvent> uncommittedChanges = aggregate.getUncommittedChanges();
-                    eventStore.saveEvents(aggregateId, aggregateClass.getSimpleName(), uncommittedChanges, aggregate.getVersion(), commandHandlerMethod.getAnnotation(CommandHandler.class).constructor());
+    // load, handle and append under the aggregate lock, the returned future completes once the events are published
+    private CompletableFuture<String> dispatchLocked(BaseCommand command, HandlerInvoker commandHandler) throws Exception {
+        try (AggregateLock ignored = aggregateLockManager.acquire(command.getId())) {
+            AggregateRoot aggregate = loadAggregate(command, commandHandler);
+            CompletableFuture<String> future = handle(command, commandHandler, aggregate);
+            aggregateFactory.release(aggregate);
+            return future != null ? future : CompletableFuture.completedFuture(null);
+        }
+    }
 
-                    aggregate.markChangesAsCommitted();
-                    callback.accept(new CommandMessage<>(command), new CommandResultMessage<>(null));
-                } catch (Exception e) {
-                    callback.accept(new CommandMessage<>(command), new CommandResultMessage<>(e));
-                } finally {
-                    if (lock != null) {
-                        lock.unlock();
+    // Applies a batch of queued commands to one instance and appends the events of consecutive commands in one
+    // write. A failing command does not fail its neighbours: the events of the commands before it are still
+    // appended, the failing command is completed exceptionally and the rest of the batch starts from a reload.
+    private AggregateRoot processBatch(List<PendingCommand> batch, AggregateRoot loaded) {
+        AggregateRoot aggregate = loaded;
+        List<PendingCommand> applied = new ArrayList<>(batch.size());
+        int previousVersion = 0;
+        for (PendingCommand pendingCommand : batch) {
+            HandlerInvoker commandHandler = pendingCommand.handler();
+            boolean constructor = isConstructor(commandHandler);
+            boolean sameAggregate = handles(aggregate, commandHandler);
+            if (!applied.isEmpty() && (constructor || !sameAggregate)) {
+                aggregate = commitBatch(applied, aggregate, previousVersion, aggregate.getUncommittedChanges().size());
+                applied.clear();
+                sameAggregate = handles(aggregate, commandHandler);
+            }
+            if (applied.isEmpty()) {
+                try {
+                    if (constructor || !sameAggregate) {
+                        aggregate = loadAggregate(pendingCommand.command(), commandHandler);
+                    } else {
+                        // the mailbox is not the only writer, LOCKING nodes may have appended since the last batch
+                        aggregate = aggregateFactory.catchUp(pendingCommand.command().getId(), aggregate);
                     }
+                } catch (Exception e) {
+                    pendingCommand.result().completeExceptionally(e);
+                    aggregate = null;
+                    continue;
+                }
+                previousVersion = aggregate.getVersion();
+            }
+            int committable = aggregate.getUncommittedChanges().size();
+            try {
+                commandHandler.invoke(aggregate, pendingCommand.command());
+                applied.add(pendingCommand);
+            } catch (Exception e) {
+                // the instance may hold part of the failed command's changes, keep only the earlier ones and drop it
+                if (!applied.isEmpty()) {
+                    commitBatch(applied, aggregate, previousVersion, committable);
+                    applied.clear();
                 }
-            });
+                pendingCommand.result().completeExceptionally(e);
+                aggregate = null;
+                continue;
+            }
+            if (constructor) {
+                aggregate = commitBatch(applied, aggregate, previousVersion, aggregate.getUncommittedChanges().size());
+                applied.clear();
+            }
+        }
+        if (!applied.isEmpty()) {
+            aggregate = commitBatch(applied, aggregate, previousVersion, aggregate.getUncommittedChanges().size());
+        }
+        return aggregate;
+    }
+
+    // the instance may be a CGLIB subclass of the aggregate bean, and the handler may be declared on a superclass
+    private static boolean handles(AggregateRoot aggregate, HandlerInvoker commandHandler) {
+        return aggregate != null
+                && commandHandler.getMethod().getDeclaringClass().isAssignableFrom(ClassUtils.getUserClass(aggregate));
+    }
+
+    // appends the first committable uncommitted changes for the applied commands and completes their results,
+    // returns the instance when it is still consistent with the store
+    private AggregateRoot commitBatch(List<PendingCommand> applied, AggregateRoot aggregate, int previousVersion, int committable) {
+        List<BaseEvent> uncommittedChanges = aggregate.getUncommittedChanges();
+        boolean complete = committable == uncommittedChanges.size();
+        List<BaseEvent> changes = complete ? uncommittedChanges : new ArrayList<>(uncommittedChanges.subList(0, committable));
+        HandlerInvoker commandHandler = applied.get(0).handler();
+        CompletableFuture<String> future;
+        try {
+            future = eventStore.saveEvents(applied.get(0).command().getId(), commandHandler.getMethod().getDeclaringClass().getSimpleName(), changes, previousVersion + changes.size(),
+                    applied.size() == 1 && isConstructor(commandHandler));
+        } catch (Exception e) {
+            applied.forEach(pendingCommand -> pendingCommand.result().completeExceptionally(e));
+            return null;
+        }
+        aggregate.markChangesAsCommitted();
+        for (PendingCommand pendingCommand : applied) {
+            if (future == null) {
+                pendingCommand.result().complete(null);
+            } else {
+                future.whenComplete((result, ex) -> {
+                    if (ex == null) {
+                        pendingCommand.result().complete(result);
+                    } else {
+                        pendingCommand.result().completeExceptionally(unwrap(ex));
+                    }
+                });
+            }
         }
+        if (!complete) {
+            return null;
+        }
+        snapshotManager.snapshotIfDue(aggregate, previousVersion);
+        return aggregate;
+    }
+
+    private AggregateRoot loadAggregate(BaseCommand command, HandlerInvoker commandHandler) throws Exception {
+        Class<?> aggregateClass = commandHandler.getMethod().getDeclaringClass();
+        return aggregateFactory.loadAggregate(command.getId(), aggregateClass.asSubclass(AggregateRoot.class), isConstructor(commandHandler));
+    }
+
+    private CompletableFuture<String> handle(BaseCommand command, HandlerInvoker commandHandler, AggregateRoot aggregate) throws Exception {
+        commandHandler.invoke(aggregate, command);
+        List<BaseEvent> uncommittedChanges = aggregate.getUncommittedChanges();
+        int previousVersion = aggregate.getVersion() - uncommittedChanges.size();
+        CompletableFuture<String> future = eventStore.saveEvents(command.getId(), commandHandler.getMethod().getDeclaringClass().getSimpleName(), uncommittedChanges, aggregate.getVersion(), isConstructor(commandHandler));
+        aggregate.markChangesAsCommitted();
+        snapshotManager.snapshotIfDue(aggregate, previousVersion);
+        return future;
+    }
+
+    private static boolean isConstructor(HandlerInvoker commandHandler) {
+        return commandHandler.getMethod().getAnnotation(CommandHandler.class).constructor();
+    }
+
+    private static String join(CompletableFuture<String> future) throws Exception {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            Throwable cause = unwrap(e);
+            if (cause instanceof Exception exception) {
+                throw exception;
+            }
+            throw e;
+        }
+    }
 
-        commandInterceptorRegisterer.getCommandInterceptors().forEach(commandInterceptor -> commandInterceptor.postHandle(command));
+    private static Throwable unwrap(Throwable throwable) {
+        return throwable instanceof CompletionException && throwable.getCause() != null ? throwable.getCause() : throwable;
     }
 
 }
@@ -28,6 +28,8 @@ package org.eventa.core.dispatcher.impl;
 
 import lombok.RequiredArgsConstructor;
 import org.eventa.core.saga.SagaHandler;
+import org.eventa.core.tracking.TrackingEventProcessor;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.context.ApplicationContext;
 import org.springframework.core.task.TaskExecutor;
@@ -35,10 +37,12 @@ import org.springframework.stereotype.Component;
 import org.eventa.core.events.BaseEvent;
 import org.eventa.core.dispatcher.EventDispatcher;
 import org.eventa.core.registry.EventHandlerRegistry;
+import org.eventa.core.registry.HandlerInvoker;
 
-import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
 
 
 @Component
@@ -48,40 +52,71 @@ public class EventDispatcherImpl implements EventDispatcher {
     private final EventHandlerRegistry eventHandlerRegistry;
     private final ApplicationContext applicationContext;
     private final SagaHandler sagaHandler;
+    private final ObjectProvider<TrackingEventProcessor> trackingEventProcessorProvider;
 
     @Qualifier("eventaTaskExecutor")
     private final TaskExecutor taskExecutor;
 
+    private final EventHandlerBatcher eventHandlerBatcher = new EventHandlerBatcher(this::invokeBatch, this::executeBatch);
+
     @Override
     public CompletableFuture<Void> dispatch(BaseEvent baseEvent) {
-        return CompletableFuture.runAsync(() -> {
-            try {
-                handleEventHandler(baseEvent);
-                handleSagaHandler(baseEvent);
-            } catch (Exception e) {
-                throw e;
-            }
-        }, taskExecutor);
+        return CompletableFuture.supplyAsync(() -> handleDeferred(baseEvent), taskExecutor).thenCompose(Function.identity());
+    }
+
+    @Override
+    public void handle(BaseEvent baseEvent) {
+        handleDeferred(baseEvent).join();
+    }
+
+    @Override
+    public CompletableFuture<Void> handleDeferred(BaseEvent baseEvent) {
+        CompletableFuture<Void> eventHandled = handleEventHandler(baseEvent);
+        handleSagaHandler(baseEvent);
+        return eventHandled;
     }
 
     private void handleSagaHandler(BaseEvent baseEvent) {
         sagaHandler.handleSagaEvent(baseEvent);
     }
 
-    private void handleEventHandler(BaseEvent baseEvent) {
+    private CompletableFuture<Void> handleEventHandler(BaseEvent baseEvent) {
         try {
-            Method handler = eventHandlerRegistry.getHandler(baseEvent.getClass());
+            HandlerInvoker handler = eventHandlerRegistry.getInvoker(baseEvent.getClass());
             if (handler == null) {
-                return;
+                return CompletableFuture.completedFuture(null);
+            }
+            Method method = handler.getMethod();
+            // the tracking processor replays this event of the projection group from the event store
+            TrackingEventProcessor trackingEventProcessor = trackingEventProcessorProvider.getIfAvailable();
+            if (trackingEventProcessor != null && !trackingEventProcessor.isLive(method.getDeclaringClass(), baseEvent.getPosition())) {
+                return CompletableFuture.completedFuture(null);
+            }
+            if (EventHandlerRegistry.isBatchHandler(method)) {
+                return eventHandlerBatcher.add(handler, baseEvent);
             }
             try {
-                Object bean = applicationContext.getBean(handler.getDeclaringClass());
+                Object bean = applicationContext.getBean(method.getDeclaringClass());
                 handler.invoke(bean, baseEvent);
-            } catch (IllegalAccessException | InvocationTargetException e) {
+                return CompletableFuture.completedFuture(null);
+            } catch (Exception e) {
                 throw new IllegalStateException("Failed to invoke event handler", e);
             }
         }catch (Exception e){
             throw e;
         }
     }
+
+    private void executeBatch(Runnable batch) {
+        taskExecutor.execute(batch);
+    }
+
+    private void invokeBatch(HandlerInvoker handler, List<BaseEvent> events) throws Exception {
+        Object bean = applicationContext.getBean(handler.getMethod().getDeclaringClass());
+        try {
+            handler.invoke(bean, events);
+        } catch (Exception e) {
+            throw new IllegalStateException("Failed to invoke batch event handler", e);
+        }
+    }
 }
@@ -0,0 +1,129 @@
+/*
+ *
+ *  * MIT License
+ *  *
+ *  * Copyright (c) 2024 Partha Sutradhar.
+ *  *
+ *  * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  * of this software and associated documentation files (the "Software"), to deal
+ *  * in the Software without restriction, including without limitation the rights
+ *  * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  * copies of the Software, and to permit persons to whom the Software is
+ *  * furnished to do so, subject to the following conditions:
+ *  *
+ *  * The above copyright notice and this permission notice shall be included in all
+ *  * copies or substantial portions of the Software.
+ *  *
+ *  * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  * SOFTWARE.
+ *
+ */
+
+package org.eventa.core.dispatcher.impl;
+
+import org.eventa.core.events.BaseEvent;
+import org.eventa.core.registry.HandlerInvoker;
+import org.eventa.core.streotype.EventHandler;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+// Collects events for @EventHandler methods taking a List into micro-batches bounded by the handler's batchSize
+// and batchTimeoutMs. Batches of one handler are flushed one after another in arrival order, so the events of an
+// aggregate keep their order. Every event's future completes with the outcome of the batch it was flushed in.
+class EventHandlerBatcher {
+
+    interface BatchInvoker {
+        void invoke(HandlerInvoker handler, List<BaseEvent> events) throws Exception;
+    }
+
+    private final BatchInvoker invoker;
+    private final Executor flushExecutor;
+    private final ConcurrentHashMap<HandlerInvoker, Batch> batches = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "eventa-event-batch");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    EventHandlerBatcher(BatchInvoker invoker, Executor flushExecutor) {
+        this.invoker = invoker;
+        this.flushExecutor = flushExecutor;
+    }
+
+    CompletableFuture<Void> add(HandlerInvoker handler, BaseEvent event) {
+        return batches.computeIfAbsent(handler, Batch::new).add(event);
+    }
+
+    private final class Batch {
+        private final HandlerInvoker handler;
+        private final int batchSize;
+        private final long batchTimeoutMs;
+        private List<BaseEvent> events = new ArrayList<>();
+        private List<CompletableFuture<Void>> results = new ArrayList<>();
+        private ScheduledFuture<?> flushTimer;
+        private CompletableFuture<Void> lastFlush = CompletableFuture.completedFuture(null);
+
+        private Batch(HandlerInvoker handler) {
+            EventHandler eventHandler = handler.getMethod().getAnnotation(EventHandler.class);
+            this.handler = handler;
+            this.batchSize = Math.max(1, eventHandler.batchSize());
+            this.batchTimeoutMs = Math.max(0, eventHandler.batchTimeoutMs());
+        }
+
+        private synchronized CompletableFuture<Void> add(BaseEvent event) {
+            CompletableFuture<Void> result = new CompletableFuture<>();
+            events.add(event);
+            results.add(result);
+            if (events.size() >= batchSize) {
+                flush();
+            } else if (flushTimer == null) {
+                flushTimer = timer.schedule(this::flushOnTimeout, batchTimeoutMs, TimeUnit.MILLISECONDS);
+            }
+            return result;
+        }
+
+        private synchronized void flushOnTimeout() {
+            flushTimer = null;
+            if (!events.isEmpty()) {
+                flush();
+            }
+        }
+
+        // caller holds the monitor, chaining onto the previous flush keeps batches in order
+        private void flush() {
+            if (flushTimer != null) {
+                flushTimer.cancel(false);
+                flushTimer = null;
+            }
+            List<BaseEvent> flushedEvents = events;
+            List<CompletableFuture<Void>> flushedResults = results;
+            events = new ArrayList<>();
+            results = new ArrayList<>();
+            lastFlush = lastFlush.exceptionally(ignored -> null).thenRunAsync(() -> {
+                try {
+                    invoker.invoke(handler, flushedEvents);
+                    flushedResults.forEach(result -> result.complete(null));
+                } catch (Throwable e) {
+                    flushedResults.forEach(result -> result.completeExceptionally(e));
+                }
+            }, flushExecutor).whenComplete((ignored, rejected) -> {
+                if (rejected != null) {
+                    flushedResults.forEach(result -> result.completeExceptionally(rejected));
+                }
+            });
+        }
+    }
+}
@@ -31,9 +31,9 @@ import org.springframework.context.ApplicationContext;
 import org.springframework.stereotype.Service;
 import org.eventa.core.dispatcher.QueryDispatcher;
 import org.eventa.core.query.ResponseType;
+import org.eventa.core.registry.HandlerInvoker;
 import org.eventa.core.registry.QueryHandlerRegistry;
 
-import java.lang.reflect.Method;
 
 @Service
 @RequiredArgsConstructor
@@ -43,13 +43,13 @@ public class QueryDispatcherImpl implements QueryDispatcher {
 
     @Override
     public <Q, R> R dispatch(Q query, ResponseType<R> responseType) {
-        Method queryMethod = queryHandlerRegistry.getHandler(query.getClass());
-        if (queryMethod == null) {
+        HandlerInvoker queryInvoker = queryHandlerRegistry.getInvoker(query.getClass());
+        if (queryInvoker == null) {
             throw new RuntimeException("No handler found for query: " + query.getClass().getName());
         }
         try {
-            Object handlerBean = applicationContext.getBean(queryMethod.getDeclaringClass());
-            Object result = queryMethod.invoke(handlerBean, query);
+            Object handlerBean = applicationContext.getBean(queryInvoker.getMethod().getDeclaringClass());
+            Object result = queryInvoker.invoke(handlerBean, query);
             return responseType.convert(result);
         } catch (Exception e) {
             throw new RuntimeException("Failed to invoke handler for query: " + query.getClass().getName(), e);
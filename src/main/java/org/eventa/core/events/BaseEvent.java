@@ -26,6 +26,7 @@
 
 package org.eventa.core.events;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.*;
 import lombok.experimental.SuperBuilder;
 import org.eventa.core.messages.Message;
@@ -37,4 +38,7 @@ import org.eventa.core.messages.Message;
 @AllArgsConstructor
 public abstract class BaseEvent extends Message {
     private int version;
+    // global position in the event store, set when the event is stored and sent in a Kafka header, not serialized
+    @JsonIgnore
+    private transient Long position;
 }
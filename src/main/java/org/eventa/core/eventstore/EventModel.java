@@ -30,6 +30,8 @@ import lombok.Builder;
 import lombok.Getter;
 import lombok.Setter;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
 import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 import org.eventa.core.events.BaseEvent;
@@ -41,15 +43,24 @@ import java.util.UUID;
 @Setter
 @Builder
 @Document(collection = "events")
+@CompoundIndexes({
+        @CompoundIndex(name = "aggregate_version_idx", def = "{'aggregateIdentifier': 1, 'version': 1}", unique = true),
+        // catch-up reads of the tracking processors
+        @CompoundIndex(name = "event_type_position_idx", def = "{'eventType': 1, 'position': 1}")
+})
 public class EventModel {
     @Id
     private String id;
-    @Indexed
+    // global position, see EventPositionAllocator
+    @Indexed(name = "position_idx")
+    private Long position;
     private UUID aggregateIdentifier;
     private String aggregateType;
     private String eventType;
-    @Indexed
     private Integer version;
+    // either the event as a document or, with eventa.serialization.format set, its serialized payload
     private BaseEvent baseEvent;
+    private String format;
+    private byte[] payload;
     private Date timestamp;
 }
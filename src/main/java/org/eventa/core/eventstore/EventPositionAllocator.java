@@ -0,0 +1,72 @@
+/*
+ *
+ *  * MIT License
+ *  *
+ *  * Copyright (c) 2024 Partha Sutradhar.
+ *  *
+ *  * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  * of this software and associated documentation files (the "Software"), to deal
+ *  * in the Software without restriction, including without limitation the rights
+ *  * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  * copies of the Software, and to permit persons to whom the Software is
+ *  * furnished to do so, subject to the following conditions:
+ *  *
+ *  * The above copyright notice and this permission notice shall be included in all
+ *  * copies or substantial portions of the Software.
+ *  *
+ *  * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  * SOFTWARE.
+ *
+ */
+
+package org.eventa.core.eventstore;
+
+import lombok.RequiredArgsConstructor;
+import org.bson.Document;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+// Hands out global event positions from the sequences collection, one round trip per save. Positions are taken
+// before the insert, so two concurrent saves can commit in the other order: a position without an event is either
+// still in flight or belongs to a save that failed. Position readers stop at such a gap until it fills or times out,
+// see TrackingEventProcessor.
+@Component
+@ConditionalOnProperty(name = "eventa.event-store.type", havingValue = "mongo", matchIfMissing = true)
+@RequiredArgsConstructor
+public class EventPositionAllocator {
+
+    private static final String SEQUENCE_COLLECTION = "sequences";
+    private static final String EVENT_SEQUENCE = "events";
+
+    private final MongoTemplate mongoTemplate;
+
+    // reserves count consecutive positions and returns the first
+    public long allocate(int count) {
+        Document sequence = mongoTemplate.findAndModify(
+                new Query(Criteria.where("_id").is(EVENT_SEQUENCE)),
+                new Update().inc("value", (long) count),
+                FindAndModifyOptions.options().returnNew(true).upsert(true),
+                Document.class,
+                SEQUENCE_COLLECTION);
+        if (sequence == null) {
+            throw new RuntimeException("Failed to reserve event positions");
+        }
+        return sequence.get("value", Number.class).longValue() - count + 1;
+    }
+
+    // the last position handed out, 0 before the first save
+    public long current() {
+        Document sequence = mongoTemplate.findById(EVENT_SEQUENCE, Document.class, SEQUENCE_COLLECTION);
+        return sequence != null ? sequence.get("value", Number.class).longValue() : 0;
+    }
+}
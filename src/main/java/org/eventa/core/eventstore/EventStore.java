@@ -31,10 +31,15 @@ import org.eventa.core.events.BaseEvent;
 import java.util.List;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
 
 public interface EventStore {
     void saveEvents(UUID aggregateId, String aggregateType, Iterable<BaseEvent> events, int expectedVersion, boolean constructor) throws Exception;
     List<BaseEvent> getEventsFromAggregate(UUID aggregateId);
     List<BaseEvent> findEventsAfterVersion(UUID aggregateId, int version);
+    Stream<BaseEvent> streamEventsFromAggregate(UUID aggregateId);
+    Stream<BaseEvent> streamEventsAfterVersion(UUID aggregateId, int version);
     CompletableFuture<String> saveEvents(UUID aggregateId, String aggregateType, List<BaseEvent> events, int expectedVersion, boolean constructor) throws Exception;
+    // all events with a position after fromPosition in position order, fetched batchSize at a time; close the stream when done
+    Stream<EventModel> readAll(long fromPosition, int batchSize);
 }
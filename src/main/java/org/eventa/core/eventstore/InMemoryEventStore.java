@@ -0,0 +1,191 @@
+/*
+ *
+ *  * MIT License
+ *  *
+ *  * Copyright (c) 2024 Partha Sutradhar.
+ *  *
+ *  * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  * of this software and associated documentation files (the "Software"), to deal
+ *  * in the Software without restriction, including without limitation the rights
+ *  * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  * copies of the Software, and to permit persons to whom the Software is
+ *  * furnished to do so, subject to the following conditions:
+ *  *
+ *  * The above copyright notice and this permission notice shall be included in all
+ *  * copies or substantial portions of the Software.
+ *  *
+ *  * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  * SOFTWARE.
+ *
+ */
+
+
+package org.eventa.core.eventstore;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.log4j.Log4j2;
+import org.eventa.core.events.BaseEvent;
+import org.eventa.core.producer.EventProducer;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+// Heap backed event store: one append array per aggregate plus a global log ordered by position. Appends to a
+// stream are serialized by the stream's monitor and the expected version is checked under it, a writer that finds
+// the stream moved on gets the optimistic concurrency failure the Mongo store reports on a duplicate key. Reads
+// take no lock. The outbox is not used, events are published right away.
+@Log4j2
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "eventa.event-store.type", havingValue = "memory")
+public class InMemoryEventStore implements EventStore {
+
+    private final EventProducer eventProducer;
+    private final Map<UUID, EventStream> streams = new ConcurrentHashMap<>();
+    private final ConcurrentNavigableMap<Long, EventModel> globalLog = new ConcurrentSkipListMap<>();
+    private final AtomicLong positions = new AtomicLong();
+
+    @Override
+    public void saveEvents(UUID aggregateId, String aggregateType, Iterable<BaseEvent> events, int expectedVersion, boolean constructor) {
+        final List<BaseEvent> pending = new ArrayList<>();
+        events.forEach(pending::add);
+        List<BaseEvent> appended = appendEvents(aggregateId, aggregateType, pending, expectedVersion, constructor);
+        if (appended.isEmpty()) {
+            return;
+        }
+        publish(aggregateType, appended).exceptionally(exception -> {
+            log.error(exception.getMessage());
+            return null;
+        });
+    }
+
+    @Override
+    public CompletableFuture<String> saveEvents(UUID aggregateId, String aggregateType, List<BaseEvent> events, int expectedVersion, boolean constructor) {
+        // the caller clears its list of uncommitted changes once this returns
+        List<BaseEvent> appended = appendEvents(aggregateId, aggregateType, List.copyOf(events), expectedVersion, constructor);
+        return appended.isEmpty() ? null : publish(aggregateType, appended);
+    }
+
+    private CompletableFuture<String> publish(String aggregateType, List<BaseEvent> appended) {
+        try {
+            return eventProducer.produceAll(aggregateType, appended);
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private List<BaseEvent> appendEvents(UUID aggregateId, String aggregateType, List<BaseEvent> pending, int expectedVersion, boolean constructor) {
+        if (pending.isEmpty()) {
+            return pending;
+        }
+        // expectedVersion is the aggregate version after the pending events were applied
+        int first = expectedVersion - pending.size() + 1;
+        final Date timestamp = new Date();
+        final EventModel[] eventModels = new EventModel[pending.size()];
+        long position = positions.getAndAdd(pending.size());
+        for (int i = 0; i < eventModels.length; i++) {
+            BaseEvent event = pending.get(i);
+            event.setVersion(first + i);
+            eventModels[i] = EventModel.builder()
+                    .position(++position)
+                    .timestamp(timestamp)
+                    .aggregateIdentifier(aggregateId)
+                    .aggregateType(aggregateType)
+                    .version(first + i)
+                    .eventType(event.getClass().getTypeName())
+                    .baseEvent(event)
+                    .build();
+        }
+        EventStream stream = streams.computeIfAbsent(aggregateId, id -> new EventStream());
+        if (!stream.append(first, eventModels)) {
+            if (constructor) {
+                throw new RuntimeException("Aggregate with Id " + aggregateId + " already exists");
+            }
+            throw new ConcurrencyFailureException("Concurrency problem with aggregate " + aggregateId);
+        }
+        for (EventModel eventModel : eventModels) {
+            globalLog.put(eventModel.getPosition(), eventModel);
+        }
+        return pending;
+    }
+
+    @Override
+    public List<BaseEvent> getEventsFromAggregate(UUID aggregateId) {
+        List<BaseEvent> events = streamEventsFromAggregate(aggregateId).collect(Collectors.toList());
+        if (events.isEmpty()) {
+            throw new RuntimeException("Aggregate " + aggregateId + " not found");
+        }
+        return events;
+    }
+
+    @Override
+    public List<BaseEvent> findEventsAfterVersion(UUID aggregateId, int version) {
+        return streamEventsAfterVersion(aggregateId, version).collect(Collectors.toList());
+    }
+
+    @Override
+    public Stream<BaseEvent> streamEventsFromAggregate(UUID aggregateId) {
+        return streamEventsAfterVersion(aggregateId, -1);
+    }
+
+    @Override
+    public Stream<BaseEvent> streamEventsAfterVersion(UUID aggregateId, int version) {
+        EventStream stream = streams.get(aggregateId);
+        return stream == null ? Stream.empty() : stream.after(version).map(EventModel::getBaseEvent);
+    }
+
+    @Override
+    public Stream<EventModel> readAll(long fromPosition, int batchSize) {
+        // positions are claimed before the stream append, like the Mongo allocator a reader can see a gap filled later
+        return globalLog.tailMap(fromPosition, false).values().stream();
+    }
+
+    // Versions are array indexes. Writers of one stream append under its lock, so a writer that fails half way
+    // leaves nothing behind for the next one to wait on; readers stay lock free and read `size` before `events`,
+    // so they never see a slot that is not yet written.
+    private static final class EventStream {
+        private volatile EventModel[] events = new EventModel[16];
+        private volatile int size;
+
+        private synchronized boolean append(int from, EventModel[] eventModels) {
+            if (size != from) {
+                return false;
+            }
+            int to = from + eventModels.length;
+            EventModel[] target = events;
+            if (target.length < to) {
+                target = Arrays.copyOf(target, Math.max(target.length * 2, to));
+            }
+            System.arraycopy(eventModels, 0, target, from, eventModels.length);
+            events = target;
+            size = to;
+            return true;
+        }
+
+        private Stream<EventModel> after(int version) {
+            int visible = size;
+            EventModel[] snapshot = events;
+            int from = Math.max(0, version + 1);
+            return from >= visible ? Stream.empty() : Arrays.stream(snapshot, from, visible);
+        }
+    }
+}
@@ -0,0 +1,605 @@
+/*
+ *
+ *  * MIT License
+ *  *
+ *  * Copyright (c) 2024 Partha Sutradhar.
+ *  *
+ *  * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  * of this software and associated documentation files (the "Software"), to deal
+ *  * in the Software without restriction, including without limitation the rights
+ *  * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  * copies of the Software, and to permit persons to whom the Software is
+ *  * furnished to do so, subject to the following conditions:
+ *  *
+ *  * The above copyright notice and this permission notice shall be included in all
+ *  * copies or substantial portions of the Software.
+ *  *
+ *  * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  * SOFTWARE.
+ *
+ */
+
+package org.eventa.core.eventstore;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.log4j.Log4j2;
+import org.eventa.core.config.EventaProperties;
+import org.eventa.core.config.MappedEventStoreProperties;
+import org.eventa.core.events.BaseEvent;
+import org.eventa.core.producer.EventProducer;
+import org.eventa.core.serializer.EventSerializer;
+import org.eventa.core.serializer.EventSerializers;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import java.util.zip.CRC32C;
+
+// Single node event store on fixed-size memory-mapped segment files. Saves are appended under one lock, which makes
+// the version check trivial; the index keeps one packed (segment, offset) address per aggregate version and reads
+// deserialize straight from the mapping. Record: body length, crc32c of the body, then position, aggregate id,
+// version, timestamp, flags, aggregate type, event type, payload format and the payload. The last record of a save is flagged
+// COMMIT, recovery drops everything after the last commit so a torn save never shows up half written.
+@Log4j2
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "eventa.event-store.type", havingValue = "mapped")
+public class MappedEventStore implements EventStore {
+
+    private static final int HEADER = 8;
+    // position, aggregate id, version, timestamp and flags
+    private static final int FIXED = 37;
+    private static final byte COMMIT = 1;
+    private static final String SEGMENT_SUFFIX = ".segment";
+    private static final byte[] ZEROS = new byte[8192];
+
+    private final EventProducer eventProducer;
+    private final EventaProperties eventaProperties;
+    private final EventSerializers eventSerializers;
+    private final Map<UUID, AggregateIndex> indexes = new ConcurrentHashMap<>();
+    private final List<Segment> segments = new CopyOnWriteArrayList<>();
+    private final ReentrantLock appendLock = new ReentrantLock();
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private final Object durableMonitor = new Object();
+
+    private Path directory;
+    private EventSerializer eventSerializer;
+    private byte[] format;
+    private int segmentSize;
+    private long fsyncIntervalMs;
+    private boolean awaitFsync;
+    private ScheduledExecutorService flusher;
+    // last committed record, readers never look past it
+    private volatile Tail tail;
+    // guarded by flushLock
+    private Tail flushed;
+    // guarded by durableMonitor
+    private long durablePosition;
+
+    @PostConstruct
+    public void open() throws IOException {
+        MappedEventStoreProperties mapped = eventaProperties.getEventStore().getMapped();
+        directory = Paths.get(mapped.getDirectory());
+        segmentSize = mapped.getSegmentSize();
+        fsyncIntervalMs = mapped.getFsyncIntervalMs();
+        awaitFsync = mapped.isAwaitFsync();
+        eventSerializer = eventSerializers.getConfiguredOrJson();
+        format = eventSerializer.format().getBytes(StandardCharsets.UTF_8);
+        Files.createDirectories(directory);
+        List<Path> files;
+        try (Stream<Path> listing = Files.list(directory)) {
+            files = listing.filter(path -> path.getFileName().toString().endsWith(SEGMENT_SUFFIX)).sorted().toList();
+        }
+        for (int i = 0; i < files.size(); i++) {
+            if (!files.get(i).equals(segmentPath(i))) {
+                throw new RuntimeException("Event store segment " + segmentPath(i) + " is missing");
+            }
+            segments.add(mapSegment(files.get(i), Files.size(files.get(i))));
+        }
+        if (segments.isEmpty()) {
+            segments.add(mapSegment(segmentPath(0), segmentSize));
+        }
+        tail = recover();
+        flushed = tail;
+        durablePosition = tail.position();
+        log.info("Opened event store in {} at position {}, {} aggregates in {} segments",
+                directory.toAbsolutePath(), tail.position(), indexes.size(), segments.size());
+        if (fsyncIntervalMs > 0) {
+            flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "eventa-fsync");
+                thread.setDaemon(true);
+                return thread;
+            });
+            flusher.scheduleWithFixedDelay(() -> {
+                try {
+                    flush(tail.position());
+                } catch (Exception e) {
+                    log.error("Failed to fsync event store segments", e);
+                }
+            }, fsyncIntervalMs, fsyncIntervalMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        if (flusher != null) {
+            flusher.shutdown();
+        }
+        flush(tail.position());
+    }
+
+    @Override
+    public void saveEvents(UUID aggregateId, String aggregateType, Iterable<BaseEvent> events, int expectedVersion, boolean constructor) {
+        final List<BaseEvent> pending = new ArrayList<>();
+        events.forEach(pending::add);
+        if (pending.isEmpty()) {
+            return;
+        }
+        appendEvents(aggregateId, aggregateType, pending, expectedVersion, constructor);
+        publish(aggregateType, pending).exceptionally(exception -> {
+            log.error(exception.getMessage());
+            return null;
+        });
+    }
+
+    @Override
+    public CompletableFuture<String> saveEvents(UUID aggregateId, String aggregateType, List<BaseEvent> events, int expectedVersion, boolean constructor) {
+        if (events.isEmpty()) {
+            return null;
+        }
+        // the caller clears its list of uncommitted changes once this returns
+        final List<BaseEvent> pending = List.copyOf(events);
+        appendEvents(aggregateId, aggregateType, pending, expectedVersion, constructor);
+        return publish(aggregateType, pending);
+    }
+
+    private CompletableFuture<String> publish(String aggregateType, List<BaseEvent> appended) {
+        try {
+            return eventProducer.produceAll(aggregateType, appended);
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private void appendEvents(UUID aggregateId, String aggregateType, List<BaseEvent> pending, int expectedVersion, boolean constructor) {
+        // expectedVersion is the aggregate version after the pending events were applied
+        int first = expectedVersion - pending.size() + 1;
+        long timestamp = System.currentTimeMillis();
+        byte[] aggregateTypeBytes = aggregateType.getBytes(StandardCharsets.UTF_8);
+        // serialization stays outside the append lock, only the copy into the mapping happens under it
+        final byte[][] bodies = new byte[pending.size()][];
+        for (int i = 0; i < bodies.length; i++) {
+            BaseEvent event = pending.get(i);
+            event.setVersion(first + i);
+            bodies[i] = encode(aggregateId, aggregateTypeBytes, event, timestamp, i == bodies.length - 1);
+        }
+        long position;
+        appendLock.lock();
+        try {
+            AggregateIndex index = indexes.computeIfAbsent(aggregateId, id -> new AggregateIndex());
+            if (index.size != first) {
+                if (constructor) {
+                    throw new RuntimeException("Aggregate with Id " + aggregateId + " already exists");
+                }
+                throw new ConcurrencyFailureException("Concurrency problem with aggregate " + aggregateId);
+            }
+            position = append(bodies, index);
+        } finally {
+            appendLock.unlock();
+        }
+        if (fsyncIntervalMs <= 0) {
+            flush(position);
+        } else if (awaitFsync) {
+            awaitDurable(position);
+        }
+    }
+
+    private byte[] encode(UUID aggregateId, byte[] aggregateType, BaseEvent event, long timestamp, boolean commit) {
+        byte[] eventType = event.getClass().getTypeName().getBytes(StandardCharsets.UTF_8);
+        byte[] payload = eventSerializer.serialize(event);
+        ByteBuffer body = ByteBuffer.allocate(FIXED + 2 + aggregateType.length + 2 + eventType.length + 2 + format.length + payload.length);
+        if (HEADER + body.capacity() > segmentSize) {
+            throw new RuntimeException("Event " + event.getClass().getTypeName() + " of " + body.capacity()
+                    + " bytes does not fit into a segment of " + segmentSize + " bytes");
+        }
+        // the position is filled in under the append lock
+        body.putLong(0L)
+                .putLong(aggregateId.getMostSignificantBits())
+                .putLong(aggregateId.getLeastSignificantBits())
+                .putInt(event.getVersion())
+                .putLong(timestamp)
+                .put(commit ? COMMIT : 0)
+                .putShort((short) aggregateType.length)
+                .put(aggregateType)
+                .putShort((short) eventType.length)
+                .put(eventType)
+                .putShort((short) format.length)
+                .put(format)
+                .put(payload);
+        return body.array();
+    }
+
+    // called with the append lock held
+    private long append(byte[][] bodies, AggregateIndex index) {
+        Tail current = tail;
+        int segment = current.segment();
+        int offset = current.offset();
+        // place every record before writing any, a failing roll over then leaves nothing half written
+        final long[] addresses = new long[bodies.length];
+        for (int i = 0; i < bodies.length; i++) {
+            int size = HEADER + bodies[i].length;
+            if (offset + size > segments.get(segment).buffer.capacity()) {
+                segments.get(segment).end = offset;
+                segment = nextSegment(segment);
+                offset = 0;
+            }
+            addresses[i] = address(segment, offset);
+            offset += size;
+        }
+        long position = current.position();
+        CRC32C crc = new CRC32C();
+        for (int i = 0; i < bodies.length; i++) {
+            byte[] body = bodies[i];
+            ByteBuffer.wrap(body).putLong(0, ++position);
+            crc.reset();
+            crc.update(body);
+            MappedByteBuffer buffer = segments.get(segmentOf(addresses[i])).buffer;
+            int at = offsetOf(addresses[i]);
+            buffer.put(at + HEADER, body);
+            buffer.putInt(at + 4, (int) crc.getValue());
+            // the length goes last, a record is not there until it is set
+            buffer.putInt(at, body.length);
+        }
+        // all events of the save become visible to readers of the aggregate at once
+        index.add(addresses);
+        tail = new Tail(position, segment, offset);
+        return position;
+    }
+
+    private int nextSegment(int segment) {
+        int next = segment + 1;
+        if (next < segments.size()) {
+            return next;
+        }
+        try {
+            segments.add(mapSegment(segmentPath(next), segmentSize));
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to create event store segment " + segmentPath(next), e);
+        }
+        return next;
+    }
+
+    // group commit: whoever gets the flush lock forces everything appended so far, later callers find it done
+    private void flush(long position) {
+        Tail target;
+        flushLock.lock();
+        try {
+            if (flushed.position() >= position) {
+                return;
+            }
+            target = tail;
+            for (int segment = flushed.segment(); segment <= target.segment(); segment++) {
+                Segment current = segments.get(segment);
+                int from = segment == flushed.segment() ? flushed.offset() : 0;
+                int to = segment == target.segment() ? target.offset() : current.end;
+                if (to > from) {
+                    current.buffer.force(from, to - from);
+                }
+            }
+            flushed = target;
+        } finally {
+            flushLock.unlock();
+        }
+        synchronized (durableMonitor) {
+            durablePosition = target.position();
+            durableMonitor.notifyAll();
+        }
+    }
+
+    private void awaitDurable(long position) {
+        synchronized (durableMonitor) {
+            while (durablePosition < position) {
+                try {
+                    durableMonitor.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException("Interrupted while waiting for the fsync of position " + position, e);
+                }
+            }
+        }
+    }
+
+    @Override
+    public List<BaseEvent> getEventsFromAggregate(UUID aggregateId) {
+        List<BaseEvent> events = streamEventsFromAggregate(aggregateId).collect(Collectors.toList());
+        if (events.isEmpty()) {
+            throw new RuntimeException("Aggregate " + aggregateId + " not found");
+        }
+        return events;
+    }
+
+    @Override
+    public List<BaseEvent> findEventsAfterVersion(UUID aggregateId, int version) {
+        return streamEventsAfterVersion(aggregateId, version).collect(Collectors.toList());
+    }
+
+    @Override
+    public Stream<BaseEvent> streamEventsFromAggregate(UUID aggregateId) {
+        return streamEventsAfterVersion(aggregateId, -1);
+    }
+
+    @Override
+    public Stream<BaseEvent> streamEventsAfterVersion(UUID aggregateId, int version) {
+        AggregateIndex index = indexes.get(aggregateId);
+        if (index == null) {
+            return Stream.empty();
+        }
+        int visible = index.size;
+        long[] addresses = index.addresses;
+        int from = Math.max(0, version + 1);
+        return from >= visible ? Stream.empty() : Arrays.stream(addresses, from, visible).mapToObj(this::readEvent);
+    }
+
+    @Override
+    public Stream<EventModel> readAll(long fromPosition, int batchSize) {
+        // the log is in position order already, batchSize does not apply to reads from the mapping
+        Tail limit = tail;
+        if (limit.position() <= fromPosition) {
+            return Stream.empty();
+        }
+        int segment = limit.segment();
+        while (segment > 0 && segments.get(segment).buffer.getLong(HEADER) > fromPosition + 1) {
+            segment--;
+        }
+        LogIterator iterator = new LogIterator(limit, segment, fromPosition);
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
+    private BaseEvent readEvent(long address) {
+        ByteBuffer buffer = segments.get(segmentOf(address)).buffer;
+        int body = offsetOf(address) + HEADER;
+        int end = body + buffer.getInt(body - HEADER);
+        int cursor = body + FIXED;
+        cursor += 2 + Short.toUnsignedInt(buffer.getShort(cursor));
+        int eventTypeLength = Short.toUnsignedInt(buffer.getShort(cursor));
+        String eventType = readString(buffer, cursor + 2, eventTypeLength);
+        cursor += 2 + eventTypeLength;
+        int formatLength = Short.toUnsignedInt(buffer.getShort(cursor));
+        String payloadFormat = readString(buffer, cursor + 2, formatLength);
+        int payload = cursor + 2 + formatLength;
+        return eventSerializers.deserialize(payloadFormat, eventType, buffer.slice(payload, end - payload));
+    }
+
+    private EventModel readModel(long address) {
+        ByteBuffer buffer = segments.get(segmentOf(address)).buffer;
+        int body = offsetOf(address) + HEADER;
+        int end = body + buffer.getInt(body - HEADER);
+        int cursor = body + FIXED;
+        int aggregateTypeLength = Short.toUnsignedInt(buffer.getShort(cursor));
+        String aggregateType = readString(buffer, cursor + 2, aggregateTypeLength);
+        cursor += 2 + aggregateTypeLength;
+        int eventTypeLength = Short.toUnsignedInt(buffer.getShort(cursor));
+        String eventType = readString(buffer, cursor + 2, eventTypeLength);
+        cursor += 2 + eventTypeLength;
+        int formatLength = Short.toUnsignedInt(buffer.getShort(cursor));
+        String payloadFormat = readString(buffer, cursor + 2, formatLength);
+        int payload = cursor + 2 + formatLength;
+        return EventModel.builder()
+                .position(buffer.getLong(body))
+                .aggregateIdentifier(new UUID(buffer.getLong(body + 8), buffer.getLong(body + 16)))
+                .version(buffer.getInt(body + 24))
+                .timestamp(new Date(buffer.getLong(body + 28)))
+                .aggregateType(aggregateType)
+                .eventType(eventType)
+                .baseEvent(eventSerializers.deserialize(payloadFormat, eventType, buffer.slice(payload, end - payload)))
+                .build();
+    }
+
+    private static String readString(ByteBuffer buffer, int offset, int length) {
+        return StandardCharsets.UTF_8.decode(buffer.slice(offset, length)).toString();
+    }
+
+    // Replays the index from the segments. Scanning stops at the first record that is missing, torn (crc mismatch)
+    // or out of sequence; records after the last COMMIT are zeroed so new appends never run into stale bytes.
+    private Tail recover() {
+        final List<UUID> uncommittedIds = new ArrayList<>();
+        final List<Long> uncommittedAddresses = new ArrayList<>();
+        Tail committed = new Tail(0, 0, 0);
+        long position = 0;
+        boolean clean = true;
+        CRC32C crc = new CRC32C();
+        scan:
+        for (int segment = 0; segment < segments.size(); segment++) {
+            MappedByteBuffer buffer = segments.get(segment).buffer;
+            int offset = 0;
+            while (offset + HEADER <= buffer.capacity()) {
+                int length = buffer.getInt(offset);
+                if (length == 0) {
+                    break;
+                }
+                int body = offset + HEADER;
+                if (length < FIXED || body + length > buffer.capacity() || buffer.getLong(body) != position + 1) {
+                    clean = false;
+                    break scan;
+                }
+                crc.reset();
+                crc.update(buffer.slice(body, length));
+                if ((int) crc.getValue() != buffer.getInt(offset + 4)) {
+                    clean = false;
+                    break scan;
+                }
+                position++;
+                uncommittedIds.add(new UUID(buffer.getLong(body + 8), buffer.getLong(body + 16)));
+                uncommittedAddresses.add(address(segment, offset));
+                offset = body + length;
+                if ((buffer.get(body + FIXED - 1) & COMMIT) != 0) {
+                    for (int i = 0; i < uncommittedIds.size(); i++) {
+                        indexes.computeIfAbsent(uncommittedIds.get(i), id -> new AggregateIndex()).add(uncommittedAddresses.get(i));
+                    }
+                    uncommittedIds.clear();
+                    uncommittedAddresses.clear();
+                    committed = new Tail(position, segment, offset);
+                }
+            }
+            segments.get(segment).end = offset;
+        }
+        if (!clean || position != committed.position()) {
+            log.warn("Event store log ends in a torn or uncommitted save, truncating it after position {}", committed.position());
+        }
+        for (int segment = committed.segment(); segment < segments.size(); segment++) {
+            MappedByteBuffer buffer = segments.get(segment).buffer;
+            int from = segment == committed.segment() ? committed.offset() : 0;
+            if (zero(buffer, from)) {
+                buffer.force();
+            }
+        }
+        return committed;
+    }
+
+    private static boolean zero(MappedByteBuffer buffer, int from) {
+        boolean dirty = false;
+        for (int offset = from; offset < buffer.capacity(); offset += ZEROS.length) {
+            int length = Math.min(ZEROS.length, buffer.capacity() - offset);
+            if (!buffer.slice(offset, length).equals(ByteBuffer.wrap(ZEROS, 0, length))) {
+                buffer.put(offset, ZEROS, 0, length);
+                dirty = true;
+            }
+        }
+        return dirty;
+    }
+
+    private Path segmentPath(int segment) {
+        return directory.resolve(String.format("%010d%s", segment, SEGMENT_SUFFIX));
+    }
+
+    private static Segment mapSegment(Path path, long size) throws IOException {
+        // the mapping stays valid after the channel is closed
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            return new Segment(channel.map(FileChannel.MapMode.READ_WRITE, 0, size));
+        }
+    }
+
+    private static long address(int segment, int offset) {
+        return ((long) segment << 32) | offset;
+    }
+
+    private static int segmentOf(long address) {
+        return (int) (address >>> 32);
+    }
+
+    private static int offsetOf(long address) {
+        return (int) address;
+    }
+
+    private record Tail(long position, int segment, int offset) {
+    }
+
+    private static final class Segment {
+        private final MappedByteBuffer buffer;
+        // bytes in use once the segment was rolled over, the open segment ends at the tail
+        private volatile int end;
+
+        private Segment(MappedByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+    }
+
+    // One address per version, the array index is the version. Appended under the append lock only; readers read
+    // `size` before `addresses`, so they never see an address that is not yet written, and the addresses of one save
+    // are published with a single write of `size`.
+    private static final class AggregateIndex {
+        private volatile long[] addresses = new long[8];
+        private volatile int size;
+
+        private void add(long... batch) {
+            int from = size;
+            int to = from + batch.length;
+            long[] target = addresses;
+            if (to > target.length) {
+                target = Arrays.copyOf(target, Math.max(target.length * 2, to));
+            }
+            System.arraycopy(batch, 0, target, from, batch.length);
+            addresses = target;
+            size = to;
+        }
+    }
+
+    private final class LogIterator implements Iterator<EventModel> {
+        private final Tail limit;
+        private final long fromPosition;
+        private int segment;
+        private int offset;
+
+        private LogIterator(Tail limit, int segment, long fromPosition) {
+            this.limit = limit;
+            this.segment = segment;
+            this.fromPosition = fromPosition;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (true) {
+                int end = segment == limit.segment() ? limit.offset() : segments.get(segment).end;
+                if (offset >= end) {
+                    if (segment >= limit.segment()) {
+                        return false;
+                    }
+                    segment++;
+                    offset = 0;
+                    continue;
+                }
+                ByteBuffer buffer = segments.get(segment).buffer;
+                if (buffer.getLong(offset + HEADER) > fromPosition) {
+                    return true;
+                }
+                offset += HEADER + buffer.getInt(offset);
+            }
+        }
+
+        @Override
+        public EventModel next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            long address = address(segment, offset);
+            offset += HEADER + segments.get(segment).buffer.getInt(offset);
+            return readModel(address);
+        }
+    }
+}
@@ -27,73 +27,162 @@
 package org.eventa.core.eventstore;
 
 import lombok.RequiredArgsConstructor;
-import org.eventa.core.cache.CacheConcurrentHashMap;
+import lombok.extern.log4j.Log4j2;
+import org.apache.curator.framework.recipes.leader.LeaderLatch;
+import org.bson.Document;
+import org.eventa.core.config.EventaProperties;
 import org.eventa.core.events.BaseEvent;
+import org.eventa.core.outbox.OutboxModel;
 import org.eventa.core.producer.EventProducer;
-import org.eventa.core.repository.EventStoreRepository;
+import org.eventa.core.serializer.EventSerializer;
+import org.eventa.core.serializer.EventSerializers;
+import org.eventa.core.streotype.Leader;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.MongoTransactionManager;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
 import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOptions;
 import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 
+@Log4j2
 @Component
 @RequiredArgsConstructor
+@ConditionalOnProperty(name = "eventa.event-store.type", havingValue = "mongo", matchIfMissing = true)
 public class MongoEventStore implements EventStore {
 
-    private final EventStoreRepository eventStoreRepository;
+    private static final String MIGRATION_COLLECTION = "migrations";
+    private static final String VERSION_MIGRATION = "zero-based-versions";
+
     private final EventProducer eventProducer;
     private final MongoTemplate mongoTemplate;
+    private final MongoTransactionManager mongoTransactionManager;
+    private final EventaProperties eventaProperties;
+    private final EventPositionAllocator eventPositionAllocator;
+    private final EventSerializers eventSerializers;
 
-    private final CacheConcurrentHashMap<UUID, Lock> locks = new CacheConcurrentHashMap<>(10); // Adjust the max size as needed
+    private final ObjectProvider<LeaderLatch> leaderLatchProvider;
 
-    private Lock getLock(UUID aggregateId) {
-        synchronized (locks) {
-            return locks.computeIfAbsent(aggregateId, id -> new ReentrantLock());
-        }
-    }
+    @Value("${eventa.mongodb.cursor-batch-size:500}")
+    private int cursorBatchSize;
+
+    @Value("${eventa.mongodb.backfill-positions:true}")
+    private boolean backfillPositions;
+
+    @Value("${eventa.mongodb.migrate-versions:true}")
+    private boolean migrateVersions;
+
+    // set once the version migration is seen as done, appends are refused until then
+    private volatile boolean versionsMigrated;
+    private final AtomicBoolean maintaining = new AtomicBoolean();
 
     @Override
     public void saveEvents(UUID aggregateId, String aggregateType, Iterable<BaseEvent> events, int expectedVersion, boolean constructor) throws Exception {
-        Lock lock = getLock(aggregateId);
-        lock.lock();
+        List<BaseEvent> appended = appendEvents(aggregateId, aggregateType, events, expectedVersion, constructor);
+        if (isOutboxEnabled()) {
+            return;
+        }
+        eventProducer.produceAll(aggregateType, appended).exceptionally(exception -> {
+            log.error(exception.getMessage());
+            return null;
+        });
+    }
+
+    private List<BaseEvent> appendEvents(UUID aggregateId, String aggregateType, Iterable<BaseEvent> events, int expectedVersion, boolean constructor) {
+        final List<BaseEvent> pending = new ArrayList<>();
+        events.forEach(pending::add);
+        if (pending.isEmpty()) {
+            return pending;
+        }
+        if (migrateVersions && !versionsMigrated()) {
+            throw new ConcurrencyFailureException("Event streams are being renumbered to zero based versions, aggregate " + aggregateId);
+        }
+        // the unique index only catches a clash on the same version, a stream that predates the constructor may not have one
+        if (constructor && mongoTemplate.exists(new Query(Criteria.where("aggregateIdentifier").is(aggregateId)), EventModel.class)) {
+            throw new RuntimeException("Aggregate with Id " + aggregateId + " already exists");
+        }
+        // expectedVersion is the aggregate version after the pending events were applied
+        int version = expectedVersion - pending.size();
+        final Date timestamp = new Date();
+        final EventSerializer eventSerializer = eventSerializers.getConfigured();
+        final List<EventModel> eventModels = new ArrayList<>(pending.size());
+        long position = eventPositionAllocator.allocate(pending.size());
+        for (BaseEvent event : pending) {
+            version++;
+            event.setVersion(version);
+            event.setPosition(position);
+            eventModels.add(EventModel.builder()
+                    .position(position++)
+                    .timestamp(timestamp)
+                    .aggregateIdentifier(aggregateId)
+                    .aggregateType(aggregateType)
+                    .version(version)
+                    .eventType(event.getClass().getTypeName())
+                    .baseEvent(eventSerializer == null ? event : null)
+                    .format(eventSerializer == null ? null : eventSerializer.format())
+                    .payload(eventSerializer == null ? null : eventSerializer.serialize(event))
+                    .build());
+        }
         try {
-            List<EventModel> eventStream = eventStoreRepository.findByAggregateIdentifier(aggregateId);
-            if (!isEmpty(eventStream) && expectedVersion != -1 && eventStream.get(eventStream.size() - 1).getVersion() != expectedVersion) {
-                if (constructor) {
-                    throw new RuntimeException("Aggregate with Id " + aggregateId + " already exists");
-                }
-                throw new ConcurrencyFailureException("Concurrency problem with aggregate " + aggregateId);
+            if (isOutboxEnabled()) {
+                new TransactionTemplate(mongoTransactionManager).executeWithoutResult(status -> {
+                    mongoTemplate.insert(eventModels, EventModel.class);
+                    mongoTemplate.insert(toOutboxEntries(eventModels), OutboxModel.class);
+                });
+            } else {
+                mongoTemplate.insert(eventModels, EventModel.class);
             }
-            int version = expectedVersion;
-            for (BaseEvent event : events) {
-                version++;
-                event.setVersion(version);
-                final EventModel eventModel = EventModel.builder()
-                        .timestamp(new Date())
-                        .aggregateIdentifier(aggregateId)
-                        .aggregateType(aggregateType)
-                        .version(version)
-                        .eventType(event.getClass().getTypeName())
-                        .baseEvent(event)
-                        .build();
-                final EventModel persistedEventModel = eventStoreRepository.save(eventModel);
-                if (persistedEventModel.getId() != null) {
-                    eventProducer.produce(event.getClass().getSimpleName(), event);
-                }
+        } catch (DuplicateKeyException e) {
+            if (constructor) {
+                throw new RuntimeException("Aggregate with Id " + aggregateId + " already exists", e);
             }
-        } finally {
-            lock.unlock();
+            throw new ConcurrencyFailureException("Concurrency problem with aggregate " + aggregateId, e);
+        }
+        return pending;
+    }
+
+    private static List<OutboxModel> toOutboxEntries(List<EventModel> eventModels) {
+        final List<OutboxModel> entries = new ArrayList<>(eventModels.size());
+        for (EventModel eventModel : eventModels) {
+            entries.add(OutboxModel.builder()
+                    .position(eventModel.getPosition())
+                    .aggregateIdentifier(eventModel.getAggregateIdentifier())
+                    .aggregateType(eventModel.getAggregateType())
+                    .version(eventModel.getVersion())
+                    .eventType(eventModel.getEventType())
+                    .baseEvent(eventModel.getBaseEvent())
+                    .format(eventModel.getFormat())
+                    .payload(eventModel.getPayload())
+                    .published(false)
+                    .createdAt(eventModel.getTimestamp())
+                    .build());
         }
+        return entries;
+    }
+
+    private boolean isOutboxEnabled() {
+        return eventaProperties.getOutbox().isEnabled();
     }
 
     private static boolean isEmpty(List<EventModel> eventStream) {
@@ -102,65 +191,200 @@ public class MongoEventStore implements EventStore {
 
     @Override
     public List<BaseEvent> getEventsFromAggregate(UUID aggregateId) {
-        Lock lock = getLock(aggregateId);
-        lock.lock();
-        try {
-            List<EventModel> eventStream = eventStoreRepository.findByAggregateIdentifier(aggregateId);
-            if (isEmpty(eventStream)) {
-                throw new RuntimeException("Aggregate " + aggregateId + " not found");
-            }
-            return eventStream.stream().map(EventModel::getBaseEvent).collect(Collectors.toList());
-        } finally {
-            lock.unlock();
+        List<EventModel> eventStream = mongoTemplate.find(eventStreamQuery(aggregateId), EventModel.class);
+        if (isEmpty(eventStream)) {
+            throw new RuntimeException("Aggregate " + aggregateId + " not found");
         }
+        return eventStream.stream().map(this::toEvent).collect(Collectors.toList());
     }
 
     @Override
     public List<BaseEvent> findEventsAfterVersion(UUID aggregateId, int version) {
-        Lock lock = getLock(aggregateId);
-        lock.lock();
+        Query query = eventStreamQuery(aggregateId).addCriteria(Criteria.where("version").gt(version));
+        return mongoTemplate.find(query, EventModel.class).stream().map(this::toEvent).collect(Collectors.toList());
+    }
+
+    @Override
+    public Stream<BaseEvent> streamEventsFromAggregate(UUID aggregateId) {
+        return mongoTemplate.stream(eventStreamQuery(aggregateId).cursorBatchSize(cursorBatchSize), EventModel.class)
+                .map(this::toEvent);
+    }
+
+    @Override
+    public Stream<BaseEvent> streamEventsAfterVersion(UUID aggregateId, int version) {
+        Query query = eventStreamQuery(aggregateId).addCriteria(Criteria.where("version").gt(version));
+        return mongoTemplate.stream(query.cursorBatchSize(cursorBatchSize), EventModel.class)
+                .map(this::toEvent);
+    }
+
+    // position order, not commit order: a save still in flight can later fill a position below the last one read
+    @Override
+    public Stream<EventModel> readAll(long fromPosition, int batchSize) {
+        Query query = new Query(Criteria.where("position").gt(fromPosition))
+                .with(Sort.by(Sort.Direction.ASC, "position"))
+                .cursorBatchSize(batchSize);
+        return mongoTemplate.stream(query, EventModel.class).map(eventSerializers::resolve);
+    }
+
+    private BaseEvent toEvent(EventModel eventModel) {
+        return eventSerializers.resolve(eventModel).getBaseEvent();
+    }
+
+    // Events stored before positions existed get one below every allocated position: -1 for the newest, counting
+    // down in _id order, so they keep their order and a live save can never land in front of them. Tracking
+    // processors wait until no event is left without a position.
+    private void backfillPositions() {
+        if (!backfillPositions) {
+            return;
+        }
+        Query query = new Query(Criteria.where("position").exists(false))
+                .with(Sort.by(Sort.Direction.DESC, "_id"))
+                .limit(cursorBatchSize);
+        query.fields().include("_id");
+        long next = Math.min(0, lowestPosition()) - 1;
+        long backfilled = 0;
+        List<EventModel> missing;
+        // a rerun continues below the positions assigned so far
+        while (isLeader() && !(missing = mongoTemplate.find(query, EventModel.class)).isEmpty()) {
+            BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, EventModel.class);
+            for (EventModel eventModel : missing) {
+                bulk.updateOne(new Query(Criteria.where("_id").is(eventModel.getId())),
+                        new Update().set("position", next--));
+            }
+            bulk.execute();
+            backfilled += missing.size();
+        }
+        if (backfilled > 0) {
+            log.info("Assigned positions to {} stored events.", backfilled);
+        }
+    }
+
+    private long lowestPosition() {
+        Query query = new Query(Criteria.where("position").exists(true))
+                .with(Sort.by(Sort.Direction.ASC, "position"))
+                .limit(1);
+        query.fields().include("position");
+        EventModel lowest = mongoTemplate.findOne(query, EventModel.class);
+        return lowest != null ? lowest.getPosition() : 0;
+    }
+
+    // One-time jobs on the stored events, run by whichever node leads, also when leadership moves later on. Both
+    // can be interrupted and rerun.
+    @Leader
+    public void onLeadership() {
+        if (!maintaining.compareAndSet(false, true)) {
+            return;
+        }
         try {
-            Query query = new Query();
-            query.addCriteria(Criteria.where("aggregateIdentifier").is(aggregateId).and("version").gte(version));
-            return mongoTemplate.find(query, BaseEvent.class);
+            backfillPositions();
+            migrateVersions();
+        } catch (RuntimeException e) {
+            log.error("Maintenance of the stored events failed, it is retried when leadership is gained again", e);
         } finally {
-            lock.unlock();
+            maintaining.set(false);
         }
     }
 
-    @Override
-    public CompletableFuture<String> saveEvents(UUID aggregateId, String aggregateType, List<BaseEvent> events, int expectedVersion, boolean constructor) throws Exception {
-        Lock lock = getLock(aggregateId);
-        lock.lock();
-        try {
-            List<EventModel> eventStream = eventStoreRepository.findByAggregateIdentifier(aggregateId);
-            if (!isEmpty(eventStream) && expectedVersion != -1 && eventStream.get(eventStream.size() - 1).getVersion() != expectedVersion) {
-                if (constructor) {
-                    throw new RuntimeException("Aggregate with Id " + aggregateId + " already exists");
+    // a node can win the election before the @Leader handlers are registered
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        if (isLeader()) {
+            onLeadership();
+        }
+    }
+
+    // Streams written before versions became zero based start at 1 and are shifted down so that stored versions
+    // match the aggregate version again. Appends are refused on every node until the migration is done, so stop the
+    // nodes of the older release first and expect commands to fail with a concurrency error until then.
+    private void migrateVersions() {
+        if (!migrateVersions || versionsMigrated()) {
+            return;
+        }
+        long migrated = 0;
+        // streams an earlier leader left half shifted, their first version is 0 already
+        Query unfinished = new Query(Criteria.where("migration").is(VERSION_MIGRATION));
+        for (Document progress : mongoTemplate.find(unfinished, Document.class, MIGRATION_COLLECTION)) {
+            if (!isLeader()) {
+                return;
+            }
+            shiftVersions(progress.get("aggregateIdentifier"), progress.get("shift", Number.class).intValue());
+            migrated++;
+        }
+        // sort + $first on the (aggregateIdentifier, version) index reads one key per stream
+        Aggregation firstVersions = Aggregation.newAggregation(
+                Aggregation.sort(Sort.by("aggregateIdentifier", "version")),
+                Aggregation.group("aggregateIdentifier").first("version").as("firstVersion"),
+                Aggregation.match(Criteria.where("firstVersion").gt(0))
+        ).withOptions(AggregationOptions.builder().allowDiskUse(true).build());
+        try (Stream<Document> streams = mongoTemplate.aggregateStream(firstVersions, mongoTemplate.getCollectionName(EventModel.class), Document.class)) {
+            for (Document stream : (Iterable<Document>) streams::iterator) {
+                if (!isLeader()) {
+                    return;
                 }
-                throw new ConcurrencyFailureException("Concurrency problem with aggregate " + aggregateId);
+                shiftVersions(stream.get("_id"), stream.get("firstVersion", Number.class).intValue());
+                migrated++;
             }
-            int version = expectedVersion;
-            CompletableFuture<String> future = null;
-            for (BaseEvent event : events) {
-                version++;
-                event.setVersion(version);
-                final EventModel eventModel = EventModel.builder()
-                        .timestamp(new Date())
-                        .aggregateIdentifier(aggregateId)
-                        .aggregateType(aggregateType)
-                        .version(version)
-                        .eventType(event.getClass().getTypeName())
-                        .baseEvent(event)
-                        .build();
-                final EventModel persistedEventModel = eventStoreRepository.save(eventModel);
-                if (persistedEventModel.getId() != null) {
-                    future = eventProducer.produceEvent(event.getClass().getSimpleName(), event);
+        }
+        mongoTemplate.save(new Document("_id", VERSION_MIGRATION).append("completedAt", new Date()), MIGRATION_COLLECTION);
+        versionsMigrated = true;
+        if (migrated > 0) {
+            log.info("Renumbered {} event streams to zero based versions.", migrated);
+        }
+    }
+
+    // The stored versions run from shift upwards and are shifted in ascending order, so each new version is already
+    // free when the unique index checks it. After an interruption the shifted events are the run starting at 0 and
+    // everything above the gap still needs shifting; the progress entry keeps the shift for the rerun.
+    private void shiftVersions(Object aggregateIdentifier, int shift) {
+        String progressId = VERSION_MIGRATION + "/" + aggregateIdentifier;
+        mongoTemplate.save(new Document("_id", progressId)
+                .append("migration", VERSION_MIGRATION)
+                .append("aggregateIdentifier", aggregateIdentifier)
+                .append("shift", shift), MIGRATION_COLLECTION);
+        Query query = new Query(Criteria.where("aggregateIdentifier").is(aggregateIdentifier))
+                .with(Sort.by(Sort.Direction.ASC, "version"));
+        query.fields().include("_id", "version", "format");
+        int next = 0;
+        for (EventModel eventModel : mongoTemplate.find(query, EventModel.class)) {
+            if (eventModel.getVersion() != next) {
+                Update update = new Update().inc("version", -shift);
+                if (eventModel.getFormat() == null) {
+                    update.inc("baseEvent.version", -shift);
                 }
+                mongoTemplate.updateFirst(new Query(Criteria.where("_id").is(eventModel.getId()).and("version").is(eventModel.getVersion())),
+                        update, EventModel.class);
             }
-            return future;
-        } finally {
-            lock.unlock();
+            next++;
+        }
+        mongoTemplate.remove(new Query(Criteria.where("_id").is(progressId)), MIGRATION_COLLECTION);
+    }
+
+    private boolean versionsMigrated() {
+        if (!versionsMigrated && mongoTemplate.exists(new Query(Criteria.where("_id").is(VERSION_MIGRATION)), MIGRATION_COLLECTION)) {
+            versionsMigrated = true;
+        }
+        return versionsMigrated;
+    }
+
+    private boolean isLeader() {
+        LeaderLatch leaderLatch = leaderLatchProvider.getIfAvailable();
+        return leaderLatch == null || leaderLatch.hasLeadership();
+    }
+
+    private static Query eventStreamQuery(UUID aggregateId) {
+        Query query = new Query(Criteria.where("aggregateIdentifier").is(aggregateId))
+                .with(Sort.by(Sort.Direction.ASC, "version"));
+        query.fields().include("baseEvent", "eventType", "format", "payload");
+        return query;
+    }
+
+    @Override
+    public CompletableFuture<String> saveEvents(UUID aggregateId, String aggregateType, List<BaseEvent> events, int expectedVersion, boolean constructor) throws Exception {
+        List<BaseEvent> appended = appendEvents(aggregateId, aggregateType, events, expectedVersion, constructor);
+        if (isOutboxEnabled()) {
+            // published later by the OutboxRelay
+            return CompletableFuture.completedFuture(aggregateId.toString());
         }
+        return appended.isEmpty() ? null : eventProducer.produceAll(aggregateType, appended);
     }
 }
@@ -0,0 +1,101 @@
+/*
+ *
+ *  * MIT License
+ *  *
+ *  * Copyright (c) 2024 Partha Sutradhar.
+ *  *
+ *  * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  * of this software and associated documentation files (the "Software"), to deal
+ *  * in the Software without restriction, including without limitation the rights
+ *  * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  * copies of the Software, and to permit persons to whom the Software is
+ *  * furnished to do so, subject to the following conditions:
+ *  *
+ *  * The above copyright notice and this permission notice shall be included in all
+ *  * copies or substantial portions of the Software.
+ *  *
+ *  * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  * SOFTWARE.
+ *
+ */
+
+package org.eventa.core.factory;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.log4j.Log4j2;
+import org.eventa.core.aggregates.AggregateRoot;
+import org.eventa.core.config.AggregateCacheProperties;
+import org.eventa.core.config.EventaProperties;
+import org.eventa.core.snapshot.SnapshotCodec;
+import org.springframework.stereotype.Component;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+@Log4j2
+@Component
+public class AggregateCache {
+
+    private final Cache<UUID, AggregateRoot> cache;
+
+    public AggregateCache(EventaProperties eventaProperties, SnapshotCodec snapshotCodec) {
+        AggregateCacheProperties properties = eventaProperties.getAggregateCache();
+        if (!properties.isEnabled()) {
+            this.cache = null;
+            return;
+        }
+        Caffeine<Object, Object> builder = Caffeine.newBuilder()
+                .expireAfterAccess(properties.getExpireAfterAccessMs(), TimeUnit.MILLISECONDS);
+        if (properties.getMaxWeight() > 0) {
+            builder.maximumWeight(properties.getMaxWeight())
+                    .weigher((UUID id, AggregateRoot aggregate) -> weigh(aggregate, snapshotCodec));
+        } else {
+            builder.maximumSize(properties.getMaxSize());
+        }
+        this.cache = builder.build();
+        log.info("Aggregate cache enabled.");
+    }
+
+    // the size of the last snapshot, refreshed whenever SnapshotManager encodes one; an instance that has none yet is
+    // encoded once, later puts of the same instance reuse that size
+    private static int weigh(AggregateRoot aggregate, SnapshotCodec snapshotCodec) {
+        if (aggregate.getEncodedSize() == 0) {
+            aggregate.setEncodedSize(snapshotCodec.encode(aggregate).length);
+        }
+        return aggregate.getEncodedSize();
+    }
+
+    public boolean isEnabled() {
+        return cache != null;
+    }
+
+    // the entry is removed while a command works on the instance, a failed command simply never puts it back
+    public <T extends AggregateRoot> T take(UUID aggregateId, Class<T> aggregateClass) {
+        if (cache == null) {
+            return null;
+        }
+        AggregateRoot aggregate = cache.asMap().remove(aggregateId);
+        if (aggregate == null || aggregate.getClass() != aggregateClass) {
+            return null;
+        }
+        return aggregateClass.cast(aggregate);
+    }
+
+    public void put(AggregateRoot aggregate) {
+        if (cache != null && aggregate.getId() != null && aggregate.getUncommittedChanges().isEmpty()) {
+            cache.put(aggregate.getId(), aggregate);
+        }
+    }
+
+    public void invalidate(UUID aggregateId) {
+        if (cache != null) {
+            cache.invalidate(aggregateId);
+        }
+    }
+}
@@ -29,16 +29,16 @@ package org.eventa.core.factory;
 import lombok.extern.log4j.Log4j2;
 import org.eventa.core.aggregates.Snapshot;
 import org.eventa.core.eventstore.EventStore;
-import org.eventa.core.repository.SnapshotRepository;
+import org.eventa.core.snapshot.SnapshotManager;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.ApplicationContext;
 import org.springframework.stereotype.Component;
 import org.eventa.core.aggregates.AggregateRoot;
 import org.eventa.core.events.BaseEvent;
 
-import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.stream.Stream;
 
 @Log4j2
 @Component
@@ -47,39 +47,53 @@ public class AggregateFactory {
     @Autowired
     private EventStore eventStore;
     @Autowired
-    private SnapshotRepository snapshotRepository;
+    private SnapshotManager snapshotManager;
+    @Autowired
+    private AggregateCache aggregateCache;
     @Autowired
     private ApplicationContext applicationContext;
 
     public <T extends AggregateRoot> T loadAggregate(UUID aggregateId, Class<T> aggregateClass, boolean construct) throws Exception {
         if (construct) {
+            aggregateCache.invalidate(aggregateId);
             return applicationContext.getBean(aggregateClass);
         }
+        T cached = aggregateCache.take(aggregateId, aggregateClass);
+        if (cached != null) {
+            return catchUp(aggregateId, cached);
+        }
         T aggregate = applicationContext.getBean(aggregateClass);
-        try {
-            /*Optional<Snapshot> snapshotOpt = snapshotRepository.findById(aggregateId);
-            if (snapshotOpt.isPresent()) {
-                aggregate.restoreSnapshot(snapshotOpt.get());
-                List<BaseEvent> events = eventStore.findEventsAfterVersion(aggregateId, snapshotOpt.get().getVersion());
-                aggregate.replayEvents(events);
-            } else {
-
-            }*/
-
-            List<BaseEvent> events = eventStore.getEventsFromAggregate(aggregateId);
+        Optional<Snapshot> snapshot = snapshotManager.findLatest(aggregateId);
+        if (snapshot.isPresent()) {
+            try {
+                snapshotManager.restore(aggregate, snapshot.get());
+            } catch (Exception e) {
+                log.warn("Failed to restore snapshot of aggregate {}, replaying full stream", aggregateId, e);
+                aggregate = applicationContext.getBean(aggregateClass);
+                snapshot = Optional.empty();
+            }
+        }
+        try (Stream<BaseEvent> events = snapshot.isPresent()
+                ? eventStore.streamEventsAfterVersion(aggregateId, snapshot.get().getVersion())
+                : eventStore.streamEventsFromAggregate(aggregateId)) {
             aggregate.replayEvents(events);
-
-            return aggregate;
-        } catch (Exception e) {
-            log.error(e.getMessage());
         }
-        List<BaseEvent> events = eventStore.getEventsFromAggregate(aggregateId);
-        if (events == null && events.isEmpty()) {
+        if (aggregate.getVersion() < 0) {
             throw new Exception("No event's found in the event store for this aggregate id " + aggregateId);
         }
+        return aggregate;
+    }
 
-        aggregate.replayEvents(events);
+    // only events committed elsewhere since the version of the instance need to be applied
+    public <T extends AggregateRoot> T catchUp(UUID aggregateId, T aggregate) {
+        try (Stream<BaseEvent> events = eventStore.streamEventsAfterVersion(aggregateId, aggregate.getVersion())) {
+            aggregate.replayEvents(events);
+        }
         return aggregate;
     }
 
+    public void release(AggregateRoot aggregate) {
+        aggregateCache.put(aggregate);
+    }
+
 }
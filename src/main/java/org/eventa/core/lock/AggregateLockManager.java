@@ -0,0 +1,103 @@
+/*
+ *
+ *  * MIT License
+ *  *
+ *  * Copyright (c) 2024 Partha Sutradhar.
+ *  *
+ *  * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  * of this software and associated documentation files (the "Software"), to deal
+ *  * in the Software without restriction, including without limitation the rights
+ *  * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  * copies of the Software, and to permit persons to whom the Software is
+ *  * furnished to do so, subject to the following conditions:
+ *  *
+ *  * The above copyright notice and this permission notice shall be included in all
+ *  * copies or substantial portions of the Software.
+ *  *
+ *  * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  * SOFTWARE.
+ *
+ */
+
+package org.eventa.core.lock;
+
+import org.springframework.stereotype.Component;
+
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Reference counted lock table, an entry lives exactly as long as some thread holds or waits for it.
+@Component
+public class AggregateLockManager {
+
+    private final ConcurrentHashMap<UUID, LockEntry> locks = new ConcurrentHashMap<>();
+    private final LongAdder acquisitions = new LongAdder();
+    private final LongAdder contendedAcquisitions = new LongAdder();
+    private final LongAdder waitNanos = new LongAdder();
+
+    public AggregateLock acquire(UUID aggregateId) {
+        LockEntry entry = locks.compute(aggregateId, (id, existing) -> {
+            LockEntry lockEntry = existing != null ? existing : new LockEntry();
+            lockEntry.references++;
+            return lockEntry;
+        });
+        if (!entry.lock.tryLock()) {
+            contendedAcquisitions.increment();
+            long start = System.nanoTime();
+            try {
+                entry.lock.lock();
+            } catch (RuntimeException | Error e) {
+                dereference(aggregateId);
+                throw e;
+            }
+            waitNanos.add(System.nanoTime() - start);
+        }
+        acquisitions.increment();
+        return new AggregateLock(aggregateId, entry);
+    }
+
+    private void dereference(UUID aggregateId) {
+        locks.computeIfPresent(aggregateId, (id, entry) -> --entry.references == 0 ? null : entry);
+    }
+
+    public LockStats getStats() {
+        return new LockStats(acquisitions.sum(), contendedAcquisitions.sum(), waitNanos.sum(), locks.size());
+    }
+
+    public record LockStats(long acquisitions, long contendedAcquisitions, long totalWaitNanos, int activeLocks) {
+    }
+
+    private static final class LockEntry {
+        private final ReentrantLock lock = new ReentrantLock();
+        // guarded by the ConcurrentHashMap bin lock, only touched inside compute
+        private int references;
+    }
+
+    public final class AggregateLock implements AutoCloseable {
+        private final UUID aggregateId;
+        private final LockEntry entry;
+        private boolean released;
+
+        private AggregateLock(UUID aggregateId, LockEntry entry) {
+            this.aggregateId = aggregateId;
+            this.entry = entry;
+        }
+
+        @Override
+        public void close() {
+            if (released) {
+                return;
+            }
+            released = true;
+            entry.lock.unlock();
+            dereference(aggregateId);
+        }
+    }
+}
@@ -0,0 +1,208 @@
+/*
+ *
+ *  * MIT License
+ *  *
+ *  * Copyright (c) 2024 Partha Sutradhar.
+ *  *
+ *  * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  * of this software and associated documentation files (the "Software"), to deal
+ *  * in the Software without restriction, including without limitation the rights
+ *  * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  * copies of the Software, and to permit persons to whom the Software is
+ *  * furnished to do so, subject to the following conditions:
+ *  *
+ *  * The above copyright notice and this permission notice shall be included in all
+ *  * copies or substantial portions of the Software.
+ *  *
+ *  * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  * SOFTWARE.
+ *
+ */
+
+package org.eventa.core.outbox;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.log4j.Log4j2;
+import org.apache.curator.framework.recipes.leader.LeaderLatch;
+import org.eventa.core.config.EventaProperties;
+import org.eventa.core.config.OutboxProperties;
+import org.eventa.core.events.BaseEvent;
+import org.eventa.core.producer.EventProducer;
+import org.eventa.core.serializer.EventSerializers;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+@Log4j2
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "eventa.outbox.enabled", havingValue = "true")
+public class OutboxRelay {
+
+    private final EventaProperties eventaProperties;
+    private final MongoTemplate mongoTemplate;
+    private final EventProducer eventProducer;
+    private final ObjectProvider<LeaderLatch> leaderLatchProvider;
+    private final EventSerializers eventSerializers;
+
+    private volatile boolean running;
+    private Thread poller;
+    private ExecutorService lanes;
+
+    @PostConstruct
+    public void start() {
+        OutboxProperties outbox = eventaProperties.getOutbox();
+        // entries left behind by releases that only flagged published entries
+        mongoTemplate.remove(new Query(Criteria.where("published").is(true)), OutboxModel.class);
+        running = true;
+        lanes = Executors.newFixedThreadPool(Math.max(1, outbox.getParallelism()));
+        poller = new Thread(this::pollLoop, "eventa-outbox-relay");
+        poller.setDaemon(true);
+        poller.start();
+        log.info("Outbox relay started.");
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        if (poller != null) {
+            poller.interrupt();
+            poller.join(TimeUnit.SECONDS.toMillis(5));
+        }
+        if (lanes != null) {
+            lanes.shutdown();
+        }
+    }
+
+    private void pollLoop() {
+        OutboxProperties outbox = eventaProperties.getOutbox();
+        while (running) {
+            try {
+                int relayed = isLeader() ? relayBatch(outbox.getMaxBatchSize()) : 0;
+                if (relayed < outbox.getMaxBatchSize()) {
+                    Thread.sleep(outbox.getLingerMs());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                log.error("Outbox relay failed", e);
+                try {
+                    Thread.sleep(outbox.getLingerMs());
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    private boolean isLeader() {
+        LeaderLatch leaderLatch = leaderLatchProvider.getIfAvailable();
+        return leaderLatch == null || leaderLatch.hasLeadership();
+    }
+
+    int relayBatch(int maxBatchSize) {
+        // position order is stable across nodes, unlike createdAt, which comes from each writer's clock
+        Query query = new Query(Criteria.where("published").is(false))
+                .with(Sort.by("position"))
+                .limit(maxBatchSize);
+        List<OutboxModel> batch = mongoTemplate.find(query, OutboxModel.class);
+        if (batch.isEmpty()) {
+            return 0;
+        }
+
+        // same aggregate -> same lane, so events of one aggregate are sent in version order
+        int parallelism = Math.max(1, eventaProperties.getOutbox().getParallelism());
+        Map<Integer, List<OutboxModel>> partitioned = new LinkedHashMap<>();
+        for (OutboxModel entry : batch) {
+            int lane = Math.floorMod(entry.getAggregateIdentifier().hashCode(), parallelism);
+            partitioned.computeIfAbsent(lane, key -> new ArrayList<>()).add(entry);
+        }
+
+        List<CompletableFuture<List<String>>> sends = new ArrayList<>();
+        for (List<OutboxModel> entries : partitioned.values()) {
+            sends.add(CompletableFuture.supplyAsync(() -> sendLane(entries), lanes).thenCompose(this::awaitPublished));
+        }
+
+        List<String> published = new ArrayList<>();
+        for (CompletableFuture<List<String>> send : sends) {
+            published.addAll(send.join());
+        }
+        if (!published.isEmpty()) {
+            mongoTemplate.remove(new Query(Criteria.where("_id").in(published)), OutboxModel.class);
+        }
+        log.debug("Relayed {} of {} outbox entries", published.size(), batch.size());
+        return batch.size();
+    }
+
+    // the events of one aggregate in the lane go out in a single Kafka transaction
+    private Map<String, CompletableFuture<String>> sendLane(List<OutboxModel> entries) {
+        Map<UUID, List<OutboxModel>> byAggregate = new LinkedHashMap<>();
+        for (OutboxModel entry : entries) {
+            byAggregate.computeIfAbsent(entry.getAggregateIdentifier(), key -> new ArrayList<>()).add(entry);
+        }
+        byAggregate.values().forEach(aggregateEntries -> aggregateEntries.sort(Comparator.comparing(OutboxModel::getVersion)));
+        Map<String, CompletableFuture<String>> futures = new LinkedHashMap<>();
+        for (List<OutboxModel> aggregateEntries : byAggregate.values()) {
+            CompletableFuture<String> future;
+            try {
+                List<BaseEvent> events = aggregateEntries.stream().map(this::toEvent).toList();
+                future = eventProducer.produceAll(aggregateEntries.get(0).getAggregateType(), events);
+            } catch (Exception e) {
+                future = CompletableFuture.failedFuture(e);
+            }
+            for (OutboxModel entry : aggregateEntries) {
+                futures.put(entry.getId(), future);
+            }
+        }
+        return futures;
+    }
+
+    private BaseEvent toEvent(OutboxModel entry) {
+        BaseEvent event = entry.getPayload() == null
+                ? entry.getBaseEvent()
+                : eventSerializers.deserialize(entry.getFormat(), entry.getEventType(), entry.getPayload());
+        event.setPosition(entry.getPosition());
+        return event;
+    }
+
+    private CompletableFuture<List<String>> awaitPublished(Map<String, CompletableFuture<String>> futures) {
+        return CompletableFuture.allOf(futures.values().stream()
+                        .map(future -> future.handle((result, ex) -> null))
+                        .toArray(CompletableFuture[]::new))
+                .thenApply(ignored -> {
+                    List<String> published = new ArrayList<>();
+                    futures.forEach((id, future) -> {
+                        if (!future.isCompletedExceptionally()) {
+                            published.add(id);
+                        } else {
+                            log.error("Failed to relay outbox entry {}", id);
+                        }
+                    });
+                    return published;
+                });
+    }
+}
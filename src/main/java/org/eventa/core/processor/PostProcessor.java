@@ -55,6 +55,9 @@ public class PostProcessor implements ApplicationListener<ContextRefreshedEvent>
     private final LeaderHandlerRegistry leaderHandlerRegistry;
     private final NotLeaderHandlerRegistry notLeaderHandlerRegistry;
 
+    // listener containers start before ContextRefreshedEvent, records can arrive while the registries are empty
+    private volatile boolean registered;
+
     @Override
     public void onApplicationEvent(ContextRefreshedEvent event) {
 
@@ -69,9 +72,9 @@ public class PostProcessor implements ApplicationListener<ContextRefreshedEvent>
             Arrays.stream(aClass.getDeclaredMethods())
                     .filter(method -> method.isAnnotationPresent(EventHandler.class))
                     .forEach(method -> {
-                        Class<?>[] parameterTypes = method.getParameterTypes();
-                        if (parameterTypes.length == 1) {
-                            eventHandlerRegistry.registerHandler(parameterTypes[0], method);
+                        Class<?> eventType = EventHandlerRegistry.eventTypeOf(method);
+                        if (eventType != null) {
+                            eventHandlerRegistry.registerHandler(eventType, method);
                         } else {
                             log.error("Problem");
                         }
@@ -156,6 +159,7 @@ public class PostProcessor implements ApplicationListener<ContextRefreshedEvent>
         }
 
 
+        registered = true;
         log.info("Eventa AutoConfiguration Loaded.");
 
         String logo = """
@@ -170,4 +174,8 @@ public class PostProcessor implements ApplicationListener<ContextRefreshedEvent>
                 """;
         System.out.println(logo);
     }
+
+    public boolean isRegistered() {
+        return registered;
+    }
 }
@@ -28,10 +28,14 @@ package org.eventa.core.producer;
 
 import org.eventa.core.events.BaseEvent;
 
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
 
 public interface EventProducer {
-    void produce(String topic, BaseEvent baseEvent) throws Exception;
+    void produce(String aggregateType, BaseEvent baseEvent) throws Exception;
 
-    CompletableFuture<String> produceEvent(String topic, BaseEvent baseEvent) throws Exception;
+    CompletableFuture<String> produceEvent(String aggregateType, BaseEvent baseEvent) throws Exception;
+
+    // publishes the events in one transaction, the future completes once all of them are acknowledged
+    CompletableFuture<String> produceAll(String aggregateType, List<BaseEvent> baseEvents) throws Exception;
 }
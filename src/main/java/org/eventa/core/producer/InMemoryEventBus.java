@@ -0,0 +1,114 @@
+/*
+ *
+ *  * MIT License
+ *  *
+ *  * Copyright (c) 2024 Partha Sutradhar.
+ *  *
+ *  * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  * of this software and associated documentation files (the "Software"), to deal
+ *  * in the Software without restriction, including without limitation the rights
+ *  * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  * copies of the Software, and to permit persons to whom the Software is
+ *  * furnished to do so, subject to the following conditions:
+ *  *
+ *  * The above copyright notice and this permission notice shall be included in all
+ *  * copies or substantial portions of the Software.
+ *  *
+ *  * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  * SOFTWARE.
+ *
+ */
+
+
+package org.eventa.core.producer;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.log4j.Log4j2;
+import org.eventa.core.config.EventaProperties;
+import org.eventa.core.dispatcher.EventDispatcher;
+import org.eventa.core.events.BaseEvent;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// In-process event bus: published events go straight to the local EventDispatcher. Like Kafka partitions, each lane
+// is a single thread and all events of an aggregate share one, so projections and sagas see them in order. The
+// returned future completes once the events are queued, the way a Kafka send completes on the broker ack.
+@Log4j2
+@Component
+@ConditionalOnProperty(name = "eventa.event-bus.type", havingValue = "memory")
+public class InMemoryEventBus implements EventProducer {
+
+    private final EventDispatcher eventDispatcher;
+    private final EventPartitioner eventPartitioner;
+    private final ExecutorService[] lanes;
+
+    public InMemoryEventBus(EventDispatcher eventDispatcher, EventPartitioner eventPartitioner, EventaProperties eventaProperties) {
+        this.eventDispatcher = eventDispatcher;
+        this.eventPartitioner = eventPartitioner;
+        this.lanes = new ExecutorService[Math.max(1, eventaProperties.getEventBus().getLanes())];
+        for (int i = 0; i < lanes.length; i++) {
+            String name = "eventa-bus-" + i;
+            lanes[i] = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, name);
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    @Override
+    public void produce(String aggregateType, BaseEvent baseEvent) {
+        produceAll(aggregateType, List.of(baseEvent));
+    }
+
+    @Override
+    public CompletableFuture<String> produceEvent(String aggregateType, BaseEvent baseEvent) {
+        return produceAll(aggregateType, List.of(baseEvent));
+    }
+
+    @Override
+    public CompletableFuture<String> produceAll(String aggregateType, List<BaseEvent> baseEvents) {
+        if (baseEvents.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        // delivered later on the lane, the caller's list may be cleared by then
+        List<BaseEvent> events = List.copyOf(baseEvents);
+        BaseEvent first = events.get(0);
+        Integer lane = eventPartitioner.partition(aggregateType, first, lanes.length);
+        try {
+            lanes[lane == null ? 0 : lane].execute(() -> events.forEach(this::deliver));
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        return CompletableFuture.completedFuture(first.getId() == null ? null : first.getId().toString());
+    }
+
+    private void deliver(BaseEvent baseEvent) {
+        try {
+            // batch handlers only queue the event here, the lane moves on without waiting for their flush
+            eventDispatcher.handleDeferred(baseEvent).exceptionally(exception -> {
+                log.error("Failed to handle event {}", baseEvent.getClass().getName(), exception);
+                return null;
+            });
+        } catch (Exception e) {
+            log.error("Failed to handle event {}", baseEvent.getClass().getName(), e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        for (ExecutorService lane : lanes) {
+            lane.shutdown();
+        }
+    }
+}
@@ -28,6 +28,9 @@ package org.eventa.core.producer;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.log4j.Log4j2;
+import org.eventa.core.config.ConditionalOnKafkaEventBus;
+import org.eventa.core.consumer.EventTypeFilteringDeserializer;
+import org.eventa.core.consumer.KafkaEventDeserializer;
 import org.eventa.core.events.BaseEvent;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.kafka.core.KafkaTemplate;
@@ -38,33 +41,34 @@ import org.springframework.messaging.support.MessageBuilder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ThreadLocalRandom;
 
 
 
 @Log4j2
 @Service
 @RequiredArgsConstructor
+@ConditionalOnKafkaEventBus
 public class KafkaEventProducer implements EventProducer {
 
     @Value("${eventa.kafka.event-bus}")
     private String eventStoreName;
+    @Value("${eventa.kafka.topic-per-aggregate-type:false}")
+    private boolean topicPerAggregateType;
     private final KafkaTemplate<UUID, Object> kafkaTemplate;
+    private final EventPartitioner eventPartitioner;
+    private final Map<String, Integer> partitionCounts = new ConcurrentHashMap<>();
 
     @Override
     @Transactional(transactionManager = "kafkaTransactionManager", rollbackFor = Exception.class)
-    public void produce(String topic, BaseEvent baseEvent) {
-        final Message<?> message = MessageBuilder
-                .withPayload(baseEvent)
-                .setHeader(KafkaHeaders.KEY, baseEvent.getId())
-                .setHeader("schema.version", "v1")
-                .setHeader(KafkaHeaders.TOPIC, eventStoreName)
-                .setHeader(KafkaHeaders.PARTITION, ThreadLocalRandom.current().nextInt(0, 2))
-                .setHeader(KafkaHeaders.TIMESTAMP, System.currentTimeMillis())
-                .build();
+    public void produce(String aggregateType, BaseEvent baseEvent) {
+        final Message<?> message = toMessage(aggregateType, baseEvent);
         CompletableFuture<? extends SendResult<UUID, ?>> future = kafkaTemplate.send(message);
         future.thenAccept(uuidSendResult -> {
             try {
@@ -80,15 +84,8 @@ public class KafkaEventProducer implements EventProducer {
 
     @Override
     @Transactional(transactionManager = "kafkaTransactionManager", rollbackFor = Exception.class)
-    public CompletableFuture<String> produceEvent(String topic, BaseEvent baseEvent) {
-        final Message<?> message = MessageBuilder
-                .withPayload(baseEvent)
-                .setHeader(KafkaHeaders.KEY, UUID.randomUUID())
-                .setHeader("schema.version", "v1")
-                .setHeader(KafkaHeaders.TOPIC, eventStoreName)
-                .setHeader(KafkaHeaders.PARTITION, ThreadLocalRandom.current().nextInt(0, 2))
-                .setHeader(KafkaHeaders.TIMESTAMP, System.currentTimeMillis())
-                .build();
+    public CompletableFuture<String> produceEvent(String aggregateType, BaseEvent baseEvent) {
+        final Message<?> message = toMessage(aggregateType, baseEvent);
 
         CompletableFuture<? extends SendResult<UUID, ?>> future = kafkaTemplate.send(message);
 
@@ -102,4 +99,58 @@ public class KafkaEventProducer implements EventProducer {
             }
         });
     }
+
+    @Override
+    @Transactional(transactionManager = "kafkaTransactionManager", rollbackFor = Exception.class)
+    public CompletableFuture<String> produceAll(String aggregateType, List<BaseEvent> baseEvents) {
+        if (baseEvents.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        List<CompletableFuture<? extends SendResult<UUID, ?>>> futures = new ArrayList<>(baseEvents.size());
+        for (BaseEvent baseEvent : baseEvents) {
+            futures.add(kafkaTemplate.send(toMessage(aggregateType, baseEvent)));
+        }
+        CompletableFuture<? extends SendResult<UUID, ?>> last = futures.get(futures.size() - 1);
+        return CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).thenApply(ignored -> {
+            SendResult<UUID, ?> sendResult = last.join();
+            log.info("Produced {} events, last Offset {}", futures.size(), sendResult.getRecordMetadata().offset());
+            return sendResult.getProducerRecord().key().toString();
+        });
+    }
+
+    private Message<?> toMessage(String aggregateType, BaseEvent baseEvent) {
+        String topic = resolveTopic(aggregateType);
+        MessageBuilder<BaseEvent> builder = MessageBuilder
+                .withPayload(baseEvent)
+                .setHeader(KafkaHeaders.KEY, baseEvent.getId())
+                .setHeader("schema.version", "v1")
+                .setHeader(EventTypeFilteringDeserializer.EVENT_TYPE_HEADER, baseEvent.getClass().getName())
+                .setHeader(KafkaHeaders.TOPIC, topic)
+                .setHeader(KafkaHeaders.TIMESTAMP, System.currentTimeMillis());
+        if (baseEvent.getPosition() != null) {
+            builder.setHeader(KafkaEventDeserializer.EVENT_POSITION_HEADER, baseEvent.getPosition().toString());
+        }
+        Integer partition = eventPartitioner.partition(topic, baseEvent, partitionCount(topic));
+        if (partition != null) {
+            builder.setHeader(KafkaHeaders.PARTITION, partition);
+        }
+        return builder.build();
+    }
+
+    private String resolveTopic(String aggregateType) {
+        if (!topicPerAggregateType || aggregateType == null) {
+            return eventStoreName;
+        }
+        // created at startup by EventaKafkaConfig, one per @Aggregate
+        return aggregateTopic(eventStoreName, aggregateType);
+    }
+
+    // looked up once per topic, partitions added to a topic later are picked up after a restart
+    private int partitionCount(String topic) {
+        return partitionCounts.computeIfAbsent(topic, name -> kafkaTemplate.partitionsFor(name).size());
+    }
+
+    public static String aggregateTopic(String eventBus, String aggregateType) {
+        return eventBus + "." + aggregateType;
+    }
 }
@@ -0,0 +1,96 @@
+/*
+ *
+ *  * MIT License
+ *  *
+ *  * Copyright (c) 2024 Partha Sutradhar.
+ *  *
+ *  * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  * of this software and associated documentation files (the "Software"), to deal
+ *  * in the Software without restriction, including without limitation the rights
+ *  * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  * copies of the Software, and to permit persons to whom the Software is
+ *  * furnished to do so, subject to the following conditions:
+ *  *
+ *  * The above copyright notice and this permission notice shall be included in all
+ *  * copies or substantial portions of the Software.
+ *  *
+ *  * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  * SOFTWARE.
+ *
+ */
+
+package org.eventa.core.producer;
+
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.common.KafkaException;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.serialization.Serializer;
+import org.apache.kafka.common.utils.Utils;
+import org.eventa.core.consumer.KafkaEventDeserializer;
+import org.eventa.core.events.BaseEvent;
+import org.eventa.core.serializer.EventSerializer;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+// Writes events with the configured EventSerializer and names the format in a header, the event type header is
+// set by the KafkaEventProducer. Other values go through the configured value serializer.
+public class KafkaEventSerializer implements Serializer<Object> {
+
+    private final EventSerializer eventSerializer;
+    private final byte[] format;
+    private Serializer<Object> delegate;
+
+    public KafkaEventSerializer(EventSerializer eventSerializer) {
+        this.eventSerializer = eventSerializer;
+        this.format = eventSerializer.format().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void configure(Map<String, ?> configs, boolean isKey) {
+        Object configured = configs.get(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG);
+        try {
+            if (configured instanceof Class<?> type) {
+                delegate = (Serializer<Object>) Utils.newInstance(type);
+            } else if (configured instanceof String className) {
+                delegate = Utils.newInstance(className, Serializer.class);
+            }
+        } catch (ClassNotFoundException e) {
+            throw new KafkaException("Value serializer " + configured + " not found", e);
+        }
+        if (delegate != null) {
+            delegate.configure(configs, isKey);
+        }
+    }
+
+    @Override
+    public byte[] serialize(String topic, Object data) {
+        return serialize(topic, null, data);
+    }
+
+    @Override
+    public byte[] serialize(String topic, Headers headers, Object data) {
+        if (data instanceof BaseEvent event && headers != null) {
+            headers.remove(KafkaEventDeserializer.EVENT_FORMAT_HEADER);
+            headers.add(KafkaEventDeserializer.EVENT_FORMAT_HEADER, format);
+            return eventSerializer.serialize(event);
+        }
+        if (delegate == null) {
+            throw new KafkaException("No value serializer configured for " + (data == null ? "null" : data.getClass().getName()));
+        }
+        return delegate.serialize(topic, headers, data);
+    }
+
+    @Override
+    public void close() {
+        if (delegate != null) {
+            delegate.close();
+        }
+    }
+}
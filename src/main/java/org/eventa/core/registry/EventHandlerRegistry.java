@@ -26,34 +26,77 @@
 
 package org.eventa.core.registry;
 
+import org.eventa.core.streotype.EventHandler;
 import org.springframework.stereotype.Component;
 
 import java.lang.reflect.Method;
+import java.lang.reflect.ParameterizedType;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 
 @Component
 public class EventHandlerRegistry {
-    private final ConcurrentHashMap<Class<?>, List<Method>> routes = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Class<?>, List<HandlerInvoker>> routes = new ConcurrentHashMap<>();
+    // the handled type names, looked up for every consumed record
+    private final Set<String> eventTypeNames = ConcurrentHashMap.newKeySet();
 
     public void registerHandler(Class<?> type, Method method) {
-        routes.computeIfAbsent(type, methods -> new LinkedList<>()).add(method);
+        // compiled once here, the dispatchers take the invoker from the registry
+        routes.computeIfAbsent(type, handlers -> new LinkedList<>()).add(HandlerInvoker.of(method));
+        eventTypeNames.add(type.getName());
     }
 
     public Method getHandler(Class<?> commandType) {
-        List<Method> methods = routes.get(commandType);
-        if (methods == null) {
+        HandlerInvoker invoker = getInvoker(commandType);
+        return invoker != null ? invoker.getMethod() : null;
+    }
+
+    public static boolean isBatchHandler(Method method) {
+        return method.getParameterCount() == 1 && List.class.isAssignableFrom(method.getParameterTypes()[0]);
+    }
+
+    // the event parameter type, or the element type of a List parameter, null when it cannot be resolved
+    public static Class<?> eventTypeOf(Method method) {
+        if (method.getParameterCount() != 1) {
             return null;
         }
-        if (methods == null && !methods.isEmpty()) {
-            throw new RuntimeException("No Event Handler is registered");
+        if (!isBatchHandler(method)) {
+            return method.getParameterTypes()[0];
+        }
+        if (method.getGenericParameterTypes()[0] instanceof ParameterizedType listType
+                && listType.getActualTypeArguments()[0] instanceof Class<?> elementType
+                && elementType != Object.class) {
+            return elementType;
+        }
+        EventHandler eventHandler = method.getAnnotation(EventHandler.class);
+        return eventHandler != null && eventHandler.value() != Object.class ? eventHandler.value() : null;
+    }
+
+    public boolean hasHandler(String eventTypeName) {
+        return eventTypeNames.contains(eventTypeName);
+    }
+
+    // the handlers declared by one projection group, by event type
+    public Map<Class<?>, HandlerInvoker> getInvokersOf(Class<?> declaringClass) {
+        Map<Class<?>, HandlerInvoker> invokers = new HashMap<>();
+        routes.forEach((type, handlers) -> handlers.stream()
+                .filter(invoker -> invoker.getMethod().getDeclaringClass() == declaringClass)
+                .forEach(invoker -> invokers.put(type, invoker)));
+        return invokers;
+    }
+
+    public HandlerInvoker getInvoker(Class<?> type) {
+        List<HandlerInvoker> invokers = routes.get(type);
+        if (invokers == null || invokers.isEmpty()) {
+            return null;
         }
-        if (methods.size() > 1) {
+        if (invokers.size() > 1) {
             throw new RuntimeException("More than one Event handler is registered");
         }
-        return methods.get(0);
+        return invokers.get(0);
     }
 }
@@ -0,0 +1,117 @@
+/*
+ *
+ *  * MIT License
+ *  *
+ *  * Copyright (c) 2024 Partha Sutradhar.
+ *  *
+ *  * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  * of this software and associated documentation files (the "Software"), to deal
+ *  * in the Software without restriction, including without limitation the rights
+ *  * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  * copies of the Software, and to permit persons to whom the Software is
+ *  * furnished to do so, subject to the following conditions:
+ *  *
+ *  * The above copyright notice and this permission notice shall be included in all
+ *  * copies or substantial portions of the Software.
+ *  *
+ *  * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  * SOFTWARE.
+ *
+ */
+
+package org.eventa.core.registry;
+
+import lombok.Getter;
+import lombok.extern.log4j.Log4j2;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+
+// Calls a single-argument handler method through a class generated once by LambdaMetafactory, so the hot path is a
+// plain interface call instead of Method.invoke. Falls back to reflection where a lambda cannot be spun, for example
+// when the handler's class loader cannot see this interface. Exceptions thrown by the handler propagate unwrapped.
+// Invokers are created once per handler method by the handler registries, the dispatchers take them from there.
+@Log4j2
+public final class HandlerInvoker {
+
+    @FunctionalInterface
+    public interface Invocation {
+        Object invoke(Object target, Object argument) throws Throwable;
+    }
+
+    @FunctionalInterface
+    public interface VoidInvocation {
+        void invoke(Object target, Object argument) throws Throwable;
+    }
+
+    @Getter
+    private final Method method;
+    private final Invocation invocation;
+
+    private HandlerInvoker(Method method, Invocation invocation) {
+        this.method = method;
+        this.invocation = invocation;
+    }
+
+    public Object invoke(Object target, Object argument) throws Exception {
+        try {
+            return invocation.invoke(target, argument);
+        } catch (Exception | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    // generates the invocation class, call once per handler method and keep the result
+    public static HandlerInvoker of(Method method) {
+        if (method.getParameterCount() == 1 && !Modifier.isStatic(method.getModifiers())) {
+            try {
+                return new HandlerInvoker(method, generate(method));
+            } catch (Throwable e) {
+                log.debug("Using reflection for handler {}: {}", method, e.toString());
+            }
+        }
+        method.setAccessible(true);
+        return new HandlerInvoker(method, (target, argument) -> {
+            try {
+                return method.invoke(target, argument);
+            } catch (InvocationTargetException e) {
+                throw e.getTargetException();
+            }
+        });
+    }
+
+    private static Invocation generate(Method method) throws Throwable {
+        MethodHandles.Lookup lookup = MethodHandles.privateLookupIn(method.getDeclaringClass(), MethodHandles.lookup());
+        MethodHandle handle = lookup.unreflect(method);
+        MethodType instantiated = handle.type().wrap();
+        if (method.getReturnType() == void.class) {
+            CallSite callSite = LambdaMetafactory.metafactory(lookup, "invoke",
+                    MethodType.methodType(VoidInvocation.class),
+                    MethodType.methodType(void.class, Object.class, Object.class),
+                    handle, instantiated.changeReturnType(void.class));
+            VoidInvocation invocation = (VoidInvocation) callSite.getTarget().invoke();
+            return (target, argument) -> {
+                invocation.invoke(target, argument);
+                return null;
+            };
+        }
+        CallSite callSite = LambdaMetafactory.metafactory(lookup, "invoke",
+                MethodType.methodType(Invocation.class),
+                MethodType.methodType(Object.class, Object.class, Object.class),
+                handle, instantiated);
+        return (Invocation) callSite.getTarget().invoke();
+    }
+}
@@ -37,20 +37,26 @@ import java.util.concurrent.ConcurrentHashMap;
 
 @Service
 public class QueryHandlerRegistry {
-    private final ConcurrentHashMap<Class<?>, List<Method>> routes = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Class<?>, List<HandlerInvoker>> routes = new ConcurrentHashMap<>();
 
     public void registerHandler(Class<?> type, Method method) {
-        routes.computeIfAbsent(type, methods -> new LinkedList<>()).add(method);
+        // compiled once here, the dispatchers take the invoker from the registry
+        routes.computeIfAbsent(type, handlers -> new LinkedList<>()).add(HandlerInvoker.of(method));
     }
 
     public Method getHandler(Class<?> commandType) {
-        List<Method> methods = routes.get(commandType);
-        if (methods == null && !methods.isEmpty()) {
-            throw new RuntimeException("No Command Handler is registered");
+        HandlerInvoker invoker = getInvoker(commandType);
+        return invoker != null ? invoker.getMethod() : null;
+    }
+
+    public HandlerInvoker getInvoker(Class<?> type) {
+        List<HandlerInvoker> invokers = routes.get(type);
+        if (invokers == null || invokers.isEmpty()) {
+            return null;
         }
-        if (methods.size() > 1) {
-            throw new RuntimeException("More than one Command handler is registered");
+        if (invokers.size() > 1) {
+            throw new RuntimeException("More than one Query handler is registered");
         }
-        return methods.get(0);
+        return invokers.get(0);
     }
 }
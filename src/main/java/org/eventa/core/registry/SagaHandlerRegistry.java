@@ -31,35 +31,47 @@ import org.springframework.stereotype.Component;
 import java.lang.reflect.Method;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 @Component
 public class SagaHandlerRegistry {
 
-    private final Map<Class<?>, Method> startSagaMethods = new HashMap<>();
-    private final Map<Class<?>, Method> endSagaMethods = new HashMap<>();
-    private final Map<Class<?>, Method> sagaEventHandlerMethods = new HashMap<>();
+    // compiled once at registration, the saga handler takes the invoker from here
+    private final Map<Class<?>, HandlerInvoker> startSagaMethods = new HashMap<>();
+    private final Map<Class<?>, HandlerInvoker> endSagaMethods = new HashMap<>();
+    private final Map<Class<?>, HandlerInvoker> sagaEventHandlerMethods = new HashMap<>();
+    // the handled type names, looked up for every consumed record
+    private final Set<String> eventTypeNames = ConcurrentHashMap.newKeySet();
 
     public void registerStartSagaHandler(Class<?> eventType, Method method) {
-        startSagaMethods.put(eventType, method);
+        startSagaMethods.put(eventType, HandlerInvoker.of(method));
+        eventTypeNames.add(eventType.getName());
     }
 
     public void registerEndSagaHandler(Class<?> eventType, Method method) {
-        endSagaMethods.put(eventType, method);
+        endSagaMethods.put(eventType, HandlerInvoker.of(method));
+        eventTypeNames.add(eventType.getName());
     }
 
     public void registerSagaEventHandler(Class<?> eventType, Method method) {
-        sagaEventHandlerMethods.put(eventType, method);
+        sagaEventHandlerMethods.put(eventType, HandlerInvoker.of(method));
+        eventTypeNames.add(eventType.getName());
     }
 
-    public Method getStartSagaMethod(Class<?> eventType) {
+    public HandlerInvoker getStartSagaInvoker(Class<?> eventType) {
         return startSagaMethods.get(eventType);
     }
 
-    public Method getEndSagaMethod(Class<?> eventType) {
+    public HandlerInvoker getEndSagaInvoker(Class<?> eventType) {
         return endSagaMethods.get(eventType);
     }
 
-    public Method getSagaEventHandlerMethod(Class<?> eventType) {
+    public HandlerInvoker getSagaEventHandlerInvoker(Class<?> eventType) {
         return sagaEventHandlerMethods.get(eventType);
     }
+
+    public boolean hasHandler(String eventTypeName) {
+        return eventTypeNames.contains(eventTypeName);
+    }
 }
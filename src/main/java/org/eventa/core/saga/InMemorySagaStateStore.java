@@ -0,0 +1,60 @@
+/*
+ *
+ *  * MIT License
+ *  *
+ *  * Copyright (c) 2024 Partha Sutradhar.
+ *  *
+ *  * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  * of this software and associated documentation files (the "Software"), to deal
+ *  * in the Software without restriction, including without limitation the rights
+ *  * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  * copies of the Software, and to permit persons to whom the Software is
+ *  * furnished to do so, subject to the following conditions:
+ *  *
+ *  * The above copyright notice and this permission notice shall be included in all
+ *  * copies or substantial portions of the Software.
+ *  *
+ *  * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  * SOFTWARE.
+ *
+ */
+
+
+package org.eventa.core.saga;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+// saga progress for the stores without MongoDB, gone after a restart. Started sagas are only bookkeeping, nothing
+// resumes from them, so the mapped store does not persist them either
+@Component
+@ConditionalOnExpression("!'${eventa.event-store.type:mongo}'.equalsIgnoreCase('mongo')")
+public class InMemorySagaStateStore implements SagaStateStore {
+
+    private final Map<UUID, SagaState> sagaStates = new ConcurrentHashMap<>();
+
+    @Override
+    public void save(SagaState sagaState) {
+        sagaStates.put(sagaState.getSagaId(), sagaState);
+    }
+
+    @Override
+    public Optional<SagaState> findBySagaId(UUID sagaId) {
+        return Optional.ofNullable(sagaStates.get(sagaId));
+    }
+
+    @Override
+    public void delete(SagaState sagaState) {
+        sagaStates.remove(sagaState.getSagaId(), sagaState);
+    }
+}
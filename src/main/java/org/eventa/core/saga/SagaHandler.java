@@ -27,8 +27,8 @@ package org.eventa.core.saga;
 import lombok.RequiredArgsConstructor;
 import org.eventa.core.cache.CacheConcurrentHashMap;
 import org.eventa.core.events.BaseEvent;
+import org.eventa.core.registry.HandlerInvoker;
 import org.eventa.core.registry.SagaHandlerRegistry;
-import org.eventa.core.repository.SagaStateRepository;
 import org.eventa.core.streotype.EndSaga;
 import org.eventa.core.streotype.SagaEventHandler;
 import org.eventa.core.streotype.StartSaga;
@@ -61,21 +61,26 @@ import java.util.concurrent.locks.ReentrantLock;
 public class SagaHandler {
 
     private final ApplicationContext applicationContext;
-    private final SagaStateRepository sagaStateRepository;
+    private final SagaStateStore sagaStateStore;
     private final SagaHandlerRegistry sagaHandlerRegistry;
-    private final CacheConcurrentHashMap<UUID, Lock> sagaLocks = new CacheConcurrentHashMap<>(10000);
+    // a lock stays cached while any thread still holds a reference to it, size-based eviction could hand a second
+    // thread a fresh lock for a saga that is still being handled
+    private final CacheConcurrentHashMap<UUID, Lock> sagaLocks = CacheConcurrentHashMap.<UUID, Lock>builder()
+            .weakValues(true)
+            .build();
 
     public void handleSagaEvent(BaseEvent event) {
-        Method method = findSagaMethod(event.getClass());
-        if (method == null) {
+        HandlerInvoker invoker = findSagaInvoker(event.getClass());
+        if (invoker == null) {
             return;
         }
+        Method method = invoker.getMethod();
         UUID sagaId = getSagaId(event, method);
         Lock lock = getLock(sagaId);
         lock.lock();
         try {
             Object sagaInstance = applicationContext.getBean(method.getDeclaringClass());
-            method.invoke(sagaInstance, event);
+            invoker.invoke(sagaInstance, event);
             manageSagaState(event, method);
         } catch (Exception e) {
             throw new RuntimeException("Failed to invoke saga method", e);
@@ -84,15 +89,15 @@ public class SagaHandler {
         }
     }
 
-    private Method findSagaMethod(Class<?> eventClass) {
-        Method method = sagaHandlerRegistry.getStartSagaMethod(eventClass);
-        if (method == null) {
-            method = sagaHandlerRegistry.getEndSagaMethod(eventClass);
+    private HandlerInvoker findSagaInvoker(Class<?> eventClass) {
+        HandlerInvoker invoker = sagaHandlerRegistry.getStartSagaInvoker(eventClass);
+        if (invoker == null) {
+            invoker = sagaHandlerRegistry.getEndSagaInvoker(eventClass);
         }
-        if (method == null) {
-            method = sagaHandlerRegistry.getSagaEventHandlerMethod(eventClass);
+        if (invoker == null) {
+            invoker = sagaHandlerRegistry.getSagaEventHandlerInvoker(eventClass);
         }
-        return method;
+        return invoker;
     }
 
     private void manageSagaState(Object event, Method method) throws Exception {
@@ -108,13 +113,13 @@ public class SagaHandler {
         sagaState.setSagaId(getSagaId(event, method));
         sagaState.setStepName(method.getParameterTypes()[0].getName());
         sagaState.setPayload(event);
-        sagaStateRepository.save(sagaState);
+        sagaStateStore.save(sagaState);
     }
 
     private void removeSagaState(Object event, Method method) {
         UUID sagaId = getSagaId(event, method);
-        Optional<SagaState> sagaState = sagaStateRepository.findBySagaId(sagaId);
-        sagaState.ifPresent(sagaStateRepository::delete);
+        Optional<SagaState> sagaState = sagaStateStore.findBySagaId(sagaId);
+        sagaState.ifPresent(sagaStateStore::delete);
     }
 
     private Field findFieldInClassHierarchy(Class<?> clazz, String fieldName) throws NoSuchFieldException {
@@ -0,0 +1,148 @@
+/*
+ *
+ *  * MIT License
+ *  *
+ *  * Copyright (c) 2024 Partha Sutradhar.
+ *  *
+ *  * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  * of this software and associated documentation files (the "Software"), to deal
+ *  * in the Software without restriction, including without limitation the rights
+ *  * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  * copies of the Software, and to permit persons to whom the Software is
+ *  * furnished to do so, subject to the following conditions:
+ *  *
+ *  * The above copyright notice and this permission notice shall be included in all
+ *  * copies or substantial portions of the Software.
+ *  *
+ *  * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  * SOFTWARE.
+ *
+ */
+
+package org.eventa.core.serializer;
+
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.dataformat.avro.AvroMapper;
+import com.fasterxml.jackson.dataformat.avro.AvroSchema;
+import org.apache.avro.JsonProperties;
+import org.apache.avro.Schema;
+import org.eventa.core.events.BaseEvent;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Avro binary without property names. A payload starts with a zero byte and the id its writer schema has in the
+// SchemaRegistry; reads resolve that schema against the current class, so fields can be removed, and added as long as
+// they are nullable: generated schemas give nullable fields a null default.
+public class AvroEventSerializer implements EventSerializer {
+
+    private static final byte MAGIC = 0;
+    private static final int PREFIX = 5;
+
+    private final AvroMapper avroMapper = new AvroMapper();
+    private final SchemaRegistry schemaRegistry;
+    private final Map<Class<?>, AvroSchema> schemas = new ConcurrentHashMap<>();
+    private final Map<Class<?>, Writer> writers = new ConcurrentHashMap<>();
+    private final Map<ReaderKey, ObjectReader> readers = new ConcurrentHashMap<>();
+
+    public AvroEventSerializer(SchemaRegistry schemaRegistry) {
+        this.schemaRegistry = schemaRegistry;
+    }
+
+    @Override
+    public String format() {
+        return "avro";
+    }
+
+    @Override
+    public byte[] serialize(BaseEvent event) {
+        Writer writer = writers.computeIfAbsent(event.getClass(), this::register);
+        ByteArrayOutputStream out = new ByteArrayOutputStream(64);
+        out.write(MAGIC);
+        out.write(writer.schemaId >>> 24);
+        out.write(writer.schemaId >>> 16);
+        out.write(writer.schemaId >>> 8);
+        out.write(writer.schemaId);
+        try {
+            writer.objectWriter.writeValue(out, event);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to serialize event " + event.getClass().getName() + " as avro", e);
+        }
+        return out.toByteArray();
+    }
+
+    @Override
+    public BaseEvent deserialize(Class<? extends BaseEvent> eventType, byte[] payload) {
+        ByteBuffer buffer = ByteBuffer.wrap(payload);
+        if (payload.length < PREFIX || buffer.get(0) != MAGIC) {
+            throw new RuntimeException("Payload of " + eventType.getName() + " is not an avro event");
+        }
+        ObjectReader reader = readers.computeIfAbsent(new ReaderKey(buffer.getInt(1), eventType), this::reader);
+        try {
+            return reader.readValue(payload, PREFIX, payload.length - PREFIX);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to deserialize event " + eventType.getName() + " from avro", e);
+        }
+    }
+
+    private Writer register(Class<?> eventType) {
+        AvroSchema schema = schemaOf(eventType);
+        int schemaId = schemaRegistry.register(eventType.getName(), schema.getAvroSchema().toString());
+        return new Writer(schemaId, avroMapper.writer(schema));
+    }
+
+    private AvroSchema schemaOf(Class<?> eventType) {
+        return schemas.computeIfAbsent(eventType, type -> {
+            try {
+                return new AvroSchema(withNullDefaults(avroMapper.schemaFor(type).getAvroSchema()));
+            } catch (IOException e) {
+                throw new RuntimeException("Failed to generate the avro schema of " + type.getName(), e);
+            }
+        });
+    }
+
+    private static Schema withNullDefaults(Schema record) {
+        List<Schema.Field> fields = new ArrayList<>(record.getFields().size());
+        for (Schema.Field field : record.getFields()) {
+            Schema type = field.schema();
+            boolean nullable = type.getType() == Schema.Type.UNION && type.getTypes().get(0).getType() == Schema.Type.NULL;
+            Object defaultValue = nullable && field.defaultVal() == null ? JsonProperties.NULL_VALUE : field.defaultVal();
+            Schema.Field copy = new Schema.Field(field.name(), type, field.doc(), defaultValue, field.order());
+            field.getObjectProps().forEach(copy::addProp);
+            fields.add(copy);
+        }
+        Schema copy = Schema.createRecord(record.getName(), record.getDoc(), record.getNamespace(), record.isError(), fields);
+        record.getObjectProps().forEach(copy::addProp);
+        return copy;
+    }
+
+    private ObjectReader reader(ReaderKey key) {
+        try {
+            AvroSchema current = schemaOf(key.eventType());
+            Schema written = new Schema.Parser().parse(schemaRegistry.getSchema(key.schemaId()));
+            AvroSchema schema = written.equals(current.getAvroSchema())
+                    ? current
+                    : new AvroSchema(written).withReaderSchema(current);
+            return avroMapper.readerFor(key.eventType()).with(schema);
+        } catch (IOException e) {
+            throw new RuntimeException("Schema " + key.schemaId() + " cannot be read as " + key.eventType().getName(), e);
+        }
+    }
+
+    private record Writer(int schemaId, ObjectWriter objectWriter) {
+    }
+
+    private record ReaderKey(int schemaId, Class<?> eventType) {
+    }
+}
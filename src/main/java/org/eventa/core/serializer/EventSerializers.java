@@ -0,0 +1,120 @@
+/*
+ *
+ *  * MIT License
+ *  *
+ *  * Copyright (c) 2024 Partha Sutradhar.
+ *  *
+ *  * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  * of this software and associated documentation files (the "Software"), to deal
+ *  * in the Software without restriction, including without limitation the rights
+ *  * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  * copies of the Software, and to permit persons to whom the Software is
+ *  * furnished to do so, subject to the following conditions:
+ *  *
+ *  * The above copyright notice and this permission notice shall be included in all
+ *  * copies or substantial portions of the Software.
+ *  *
+ *  * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  * SOFTWARE.
+ *
+ */
+
+package org.eventa.core.serializer;
+
+import lombok.extern.log4j.Log4j2;
+import org.eventa.core.config.EventaProperties;
+import org.eventa.core.config.SerializationProperties;
+import org.eventa.core.events.BaseEvent;
+import org.eventa.core.eventstore.EventModel;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.StringUtils;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// The built-in serializers plus any EventSerializer beans, by format. Writers use the configured format, readers
+// pick the serializer by the format stored with the payload, so stores and topics can hold several formats.
+@Log4j2
+@Component
+public class EventSerializers {
+
+    private final Map<String, EventSerializer> serializers = new ConcurrentHashMap<>();
+    private final Map<String, Class<? extends BaseEvent>> eventTypes = new ConcurrentHashMap<>();
+    private final EventSerializer configured;
+
+    public EventSerializers(EventaProperties eventaProperties, ObjectProvider<EventSerializer> eventSerializers,
+                            ObjectProvider<SchemaRegistry> schemaRegistry) {
+        SerializationProperties serialization = eventaProperties.getSerialization();
+        register(JacksonEventSerializer.json());
+        register(JacksonEventSerializer.cbor());
+        register(JacksonEventSerializer.smile());
+        if (ClassUtils.isPresent("com.fasterxml.jackson.dataformat.avro.AvroMapper", getClass().getClassLoader())) {
+            register(new AvroEventSerializer(schemaRegistry.getIfAvailable(
+                    () -> new FileSchemaRegistry(Paths.get(serialization.getSchemaRegistryDirectory())))));
+        }
+        eventSerializers.orderedStream().forEach(this::register);
+        configured = StringUtils.hasText(serialization.getFormat()) ? get(serialization.getFormat()) : null;
+        if (configured != null) {
+            log.info("Serializing events as {}.", configured.format());
+        }
+    }
+
+    private void register(EventSerializer eventSerializer) {
+        serializers.put(eventSerializer.format(), eventSerializer);
+    }
+
+    public EventSerializer get(String format) {
+        EventSerializer eventSerializer = serializers.get(format);
+        if (eventSerializer == null) {
+            throw new RuntimeException("No EventSerializer for format " + format
+                    + (format.equals("avro") ? ", add com.fasterxml.jackson.dataformat:jackson-dataformat-avro" : ""));
+        }
+        return eventSerializer;
+    }
+
+    // null when eventa.serialization.format is unset
+    public EventSerializer getConfigured() {
+        return configured;
+    }
+
+    // for stores that always write bytes
+    public EventSerializer getConfiguredOrJson() {
+        return configured != null ? configured : get("json");
+    }
+
+    public BaseEvent deserialize(String format, String eventType, byte[] payload) {
+        return get(format).deserialize(eventType(eventType), payload);
+    }
+
+    public BaseEvent deserialize(String format, String eventType, ByteBuffer payload) {
+        return get(format).deserialize(eventType(eventType), payload);
+    }
+
+    // events stored as bytes get their baseEvent, documents written before a format was set already have it
+    public EventModel resolve(EventModel eventModel) {
+        if (eventModel.getBaseEvent() == null && eventModel.getPayload() != null) {
+            eventModel.setBaseEvent(deserialize(eventModel.getFormat(), eventModel.getEventType(), eventModel.getPayload()));
+        }
+        return eventModel;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Class<? extends BaseEvent> eventType(String eventType) {
+        return eventTypes.computeIfAbsent(eventType, type -> {
+            try {
+                return (Class<? extends BaseEvent>) ClassUtils.forName(type, null);
+            } catch (ClassNotFoundException e) {
+                throw new RuntimeException("Unknown event type " + type, e);
+            }
+        });
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ *
+ *  * MIT License
+ *  *
+ *  * Copyright (c) 2024 Partha Sutradhar.
+ *  *
+ *  * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  * of this software and associated documentation files (the "Software"), to deal
+ *  * in the Software without restriction, including without limitation the rights
+ *  * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  * copies of the Software, and to permit persons to whom the Software is
+ *  * furnished to do so, subject to the following conditions:
+ *  *
+ *  * The above copyright notice and this permission notice shall be included in all
+ *  * copies or substantial portions of the Software.
+ *  *
+ *  * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  * SOFTWARE.
+ *
+ */
+
+package org.eventa.core.serializer;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+// Schema registry stand-in for single hosts and local development: one <id>.schema file per schema, the subject on
+// the first line. Processes sharing the directory claim ids with a hard link, which fails if the id is taken.
+public class FileSchemaRegistry implements SchemaRegistry {
+
+    private static final String SUFFIX = ".schema";
+
+    private final Path directory;
+    private final Map<Integer, String> schemas = new ConcurrentHashMap<>();
+    private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+
+    public FileSchemaRegistry(Path directory) {
+        this.directory = directory;
+    }
+
+    @Override
+    public synchronized int register(String subject, String schema) {
+        String key = subject + '\n' + schema;
+        Integer id = ids.get(key);
+        if (id == null) {
+            load();
+            id = ids.get(key);
+        }
+        if (id != null) {
+            return id;
+        }
+        try {
+            Files.createDirectories(directory);
+            Path pending = Files.createTempFile(directory, "pending", ".tmp");
+            try {
+                Files.writeString(pending, key, StandardCharsets.UTF_8);
+                int next = schemas.keySet().stream().mapToInt(Integer::intValue).max().orElse(0) + 1;
+                while (true) {
+                    try {
+                        Files.createLink(directory.resolve(next + SUFFIX), pending);
+                        break;
+                    } catch (FileAlreadyExistsException e) {
+                        next++;
+                    }
+                }
+                schemas.put(next, schema);
+                ids.put(key, next);
+                return next;
+            } finally {
+                Files.deleteIfExists(pending);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to register schema of " + subject + " in " + directory, e);
+        }
+    }
+
+    @Override
+    public String getSchema(int id) {
+        String schema = schemas.get(id);
+        if (schema == null) {
+            // registered by another process since the last look
+            synchronized (this) {
+                load();
+            }
+            schema = schemas.get(id);
+        }
+        if (schema == null) {
+            throw new RuntimeException("Unknown schema id " + id + " in " + directory);
+        }
+        return schema;
+    }
+
+    private void load() {
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : files.filter(path -> path.getFileName().toString().endsWith(SUFFIX)).toList()) {
+                String name = file.getFileName().toString();
+                int id = Integer.parseInt(name.substring(0, name.length() - SUFFIX.length()));
+                if (!schemas.containsKey(id)) {
+                    String content = Files.readString(file, StandardCharsets.UTF_8);
+                    schemas.put(id, content.substring(content.indexOf('\n') + 1));
+                    ids.putIfAbsent(content, id);
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to read schemas from " + directory, e);
+        }
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ *
+ *  * MIT License
+ *  *
+ *  * Copyright (c) 2024 Partha Sutradhar.
+ *  *
+ *  * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  * of this software and associated documentation files (the "Software"), to deal
+ *  * in the Software without restriction, including without limitation the rights
+ *  * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  * copies of the Software, and to permit persons to whom the Software is
+ *  * furnished to do so, subject to the following conditions:
+ *  *
+ *  * The above copyright notice and this permission notice shall be included in all
+ *  * copies or substantial portions of the Software.
+ *  *
+ *  * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  * SOFTWARE.
+ *
+ */
+
+package org.eventa.core.serializer;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.ByteBufferBackedInputStream;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
+import org.eventa.core.events.BaseEvent;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+// Jackson data binding to JSON or to one of its binary encodings. CBOR and Smile keep the property names but write
+// numbers, UUIDs and dates as binary, and Smile back-references names repeated within a payload.
+public class JacksonEventSerializer implements EventSerializer {
+
+    private final String format;
+    private final ObjectMapper objectMapper;
+
+    public JacksonEventSerializer(String format, ObjectMapper objectMapper) {
+        this.format = format;
+        this.objectMapper = objectMapper.findAndRegisterModules()
+                .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+    }
+
+    public static JacksonEventSerializer json() {
+        return new JacksonEventSerializer("json", new ObjectMapper());
+    }
+
+    public static JacksonEventSerializer cbor() {
+        return new JacksonEventSerializer("cbor", new CBORMapper());
+    }
+
+    public static JacksonEventSerializer smile() {
+        return new JacksonEventSerializer("smile", new SmileMapper());
+    }
+
+    @Override
+    public String format() {
+        return format;
+    }
+
+    @Override
+    public byte[] serialize(BaseEvent event) {
+        try {
+            return objectMapper.writeValueAsBytes(event);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to serialize event " + event.getClass().getName() + " as " + format, e);
+        }
+    }
+
+    @Override
+    public BaseEvent deserialize(Class<? extends BaseEvent> eventType, byte[] payload) {
+        try {
+            return objectMapper.readValue(payload, eventType);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to deserialize event " + eventType.getName() + " from " + format, e);
+        }
+    }
+
+    @Override
+    public BaseEvent deserialize(Class<? extends BaseEvent> eventType, ByteBuffer payload) {
+        try {
+            return objectMapper.readValue(new ByteBufferBackedInputStream(payload.duplicate()), eventType);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to deserialize event " + eventType.getName() + " from " + format, e);
+        }
+    }
+}
@@ -0,0 +1,281 @@
+/*
+ *
+ *  * MIT License
+ *  *
+ *  * Copyright (c) 2024 Partha Sutradhar.
+ *  *
+ *  * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  * of this software and associated documentation files (the "Software"), to deal
+ *  * in the Software without restriction, including without limitation the rights
+ *  * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  * copies of the Software, and to permit persons to whom the Software is
+ *  * furnished to do so, subject to the following conditions:
+ *  *
+ *  * The above copyright notice and this permission notice shall be included in all
+ *  * copies or substantial portions of the Software.
+ *  *
+ *  * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  * SOFTWARE.
+ *
+ */
+
+package org.eventa.core.snapshot;
+
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.log4j.Log4j2;
+import org.eventa.core.aggregates.AggregateRoot;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+// format byte, layout fingerprint, field count, then name + type tag + value per field.
+// A matching fingerprint restores fields by position, otherwise by name, so older snapshots survive field changes.
+@Log4j2
+public class BinarySnapshotCodec implements SnapshotCodec {
+
+    private static final byte FORMAT = 1;
+
+    private static final byte NULL = 0;
+    private static final byte BOOLEAN = 1;
+    private static final byte BYTE = 2;
+    private static final byte SHORT = 3;
+    private static final byte CHAR = 4;
+    private static final byte INT = 5;
+    private static final byte LONG = 6;
+    private static final byte FLOAT = 7;
+    private static final byte DOUBLE = 8;
+    private static final byte STRING = 9;
+    private static final byte UUID_TAG = 10;
+    private static final byte ENUM = 11;
+    private static final byte BIG_DECIMAL = 12;
+    private static final byte INSTANT = 13;
+    private static final byte DATE = 14;
+    private static final byte JSON = 15;
+
+    private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+    private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+
+    private final Map<Class<?>, Layout> layouts = new ConcurrentHashMap<>();
+    private final ObjectMapper objectMapper;
+
+    public BinarySnapshotCodec() {
+        this(new ObjectMapper().findAndRegisterModules());
+    }
+
+    public BinarySnapshotCodec(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    public byte[] encode(AggregateRoot aggregate) {
+        Layout layout = layoutOf(aggregate.getClass());
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + layout.accessors.length * 16);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(FORMAT);
+            out.writeInt(layout.fingerprint);
+            out.writeShort(layout.accessors.length);
+            for (Accessor accessor : layout.accessors) {
+                out.writeUTF(accessor.name);
+                writeValue(out, accessor, (Object) accessor.getter.invokeExact((Object) aggregate));
+            }
+        } catch (Throwable e) {
+            throw new RuntimeException("Failed to encode snapshot of " + aggregate.getClass().getName(), e);
+        }
+        return bytes.toByteArray();
+    }
+
+    @Override
+    public void decode(byte[] payload, AggregateRoot aggregate) {
+        Layout layout = layoutOf(aggregate.getClass());
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload))) {
+            byte format = in.readByte();
+            if (format != FORMAT) {
+                throw new IllegalStateException("Unsupported snapshot format " + format);
+            }
+            boolean sameLayout = in.readInt() == layout.fingerprint;
+            int count = in.readUnsignedShort();
+            for (int i = 0; i < count; i++) {
+                String name = in.readUTF();
+                Accessor accessor = sameLayout ? layout.accessors[i] : layout.byName.get(name);
+                Object value = readValue(in, accessor);
+                if (accessor != null && (value != null || !accessor.type.isPrimitive())) {
+                    try {
+                        accessor.setter.invokeExact((Object) aggregate, value);
+                    } catch (ClassCastException e) {
+                        log.warn("Skipping snapshot field {} of {}, stored type no longer matches", name, aggregate.getClass().getName());
+                    }
+                }
+            }
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new RuntimeException("Failed to decode snapshot of " + aggregate.getClass().getName(), e);
+        }
+    }
+
+    private void writeValue(DataOutputStream out, Accessor accessor, Object value) throws IOException {
+        if (value == null) {
+            out.writeByte(NULL);
+        } else if (value instanceof Integer v) {
+            out.writeByte(INT);
+            out.writeInt(v);
+        } else if (value instanceof Long v) {
+            out.writeByte(LONG);
+            out.writeLong(v);
+        } else if (value instanceof Double v) {
+            out.writeByte(DOUBLE);
+            out.writeDouble(v);
+        } else if (value instanceof String v) {
+            out.writeByte(STRING);
+            writeString(out, v);
+        } else if (value instanceof UUID v) {
+            out.writeByte(UUID_TAG);
+            out.writeLong(v.getMostSignificantBits());
+            out.writeLong(v.getLeastSignificantBits());
+        } else if (value instanceof Boolean v) {
+            out.writeByte(BOOLEAN);
+            out.writeBoolean(v);
+        } else if (value instanceof Float v) {
+            out.writeByte(FLOAT);
+            out.writeFloat(v);
+        } else if (value instanceof Short v) {
+            out.writeByte(SHORT);
+            out.writeShort(v);
+        } else if (value instanceof Byte v) {
+            out.writeByte(BYTE);
+            out.writeByte(v);
+        } else if (value instanceof Character v) {
+            out.writeByte(CHAR);
+            out.writeChar(v);
+        } else if (value instanceof Enum<?> v) {
+            out.writeByte(ENUM);
+            writeString(out, v.name());
+        } else if (value instanceof BigDecimal v) {
+            out.writeByte(BIG_DECIMAL);
+            writeString(out, v.toString());
+        } else if (value instanceof Instant v) {
+            out.writeByte(INSTANT);
+            out.writeLong(v.getEpochSecond());
+            out.writeInt(v.getNano());
+        } else if (value instanceof Date v) {
+            out.writeByte(DATE);
+            out.writeLong(v.getTime());
+        } else {
+            byte[] json = objectMapper.writerFor(accessor.javaType).writeValueAsBytes(value);
+            out.writeByte(JSON);
+            out.writeInt(json.length);
+            out.write(json);
+        }
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private Object readValue(DataInputStream in, Accessor accessor) throws IOException {
+        byte tag = in.readByte();
+        return switch (tag) {
+            case NULL -> null;
+            case BOOLEAN -> in.readBoolean();
+            case BYTE -> in.readByte();
+            case SHORT -> in.readShort();
+            case CHAR -> in.readChar();
+            case INT -> in.readInt();
+            case LONG -> in.readLong();
+            case FLOAT -> in.readFloat();
+            case DOUBLE -> in.readDouble();
+            case STRING -> readString(in);
+            case UUID_TAG -> new UUID(in.readLong(), in.readLong());
+            case ENUM -> {
+                String name = readString(in);
+                yield accessor != null && accessor.type.isEnum() ? Enum.valueOf((Class<? extends Enum>) accessor.type, name) : null;
+            }
+            case BIG_DECIMAL -> new BigDecimal(readString(in));
+            case INSTANT -> Instant.ofEpochSecond(in.readLong(), in.readInt());
+            case DATE -> new Date(in.readLong());
+            case JSON -> {
+                byte[] json = new byte[in.readInt()];
+                in.readFully(json);
+                yield accessor != null ? objectMapper.readValue(json, accessor.javaType) : null;
+            }
+            default -> throw new IllegalStateException("Unknown snapshot value tag " + tag);
+        };
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(utf8.length);
+        out.write(utf8);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] utf8 = new byte[in.readInt()];
+        in.readFully(utf8);
+        return new String(utf8, StandardCharsets.UTF_8);
+    }
+
+    private Layout layoutOf(Class<?> aggregateClass) {
+        return layouts.computeIfAbsent(aggregateClass, this::createLayout);
+    }
+
+    private Layout createLayout(Class<?> aggregateClass) {
+        List<Field> fields = new ArrayList<>();
+        for (Class<?> type = aggregateClass; type != null && type != AggregateRoot.class; type = type.getSuperclass()) {
+            for (Field field : type.getDeclaredFields()) {
+                int modifiers = field.getModifiers();
+                if (!Modifier.isStatic(modifiers) && !Modifier.isTransient(modifiers) && !field.isSynthetic()) {
+                    fields.add(field);
+                }
+            }
+        }
+        fields.sort(Comparator.comparing((Field field) -> field.getDeclaringClass().getName()).thenComparing(Field::getName));
+
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        Accessor[] accessors = new Accessor[fields.size()];
+        Map<String, Accessor> byName = new HashMap<>();
+        int fingerprint = 1;
+        for (int i = 0; i < fields.size(); i++) {
+            Field field = fields.get(i);
+            field.setAccessible(true);
+            try {
+                accessors[i] = new Accessor(field.getName(), field.getType(),
+                        objectMapper.getTypeFactory().constructType(field.getGenericType()),
+                        lookup.unreflectGetter(field).asType(GETTER_TYPE),
+                        lookup.unreflectSetter(field).asType(SETTER_TYPE));
+            } catch (IllegalAccessException e) {
+                throw new IllegalStateException("Cannot access field " + field + " for snapshots", e);
+            }
+            byName.putIfAbsent(field.getName(), accessors[i]);
+            fingerprint = 31 * fingerprint + (field.getName() + ':' + field.getType().getName()).hashCode();
+        }
+        return new Layout(fingerprint, accessors, byName);
+    }
+
+    private record Layout(int fingerprint, Accessor[] accessors, Map<String, Accessor> byName) {
+    }
+
+    private record Accessor(String name, Class<?> type, JavaType javaType, MethodHandle getter, MethodHandle setter) {
+    }
+}
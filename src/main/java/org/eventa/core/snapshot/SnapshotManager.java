@@ -0,0 +1,121 @@
+/*
+ *
+ *  * MIT License
+ *  *
+ *  * Copyright (c) 2024 Partha Sutradhar.
+ *  *
+ *  * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  * of this software and associated documentation files (the "Software"), to deal
+ *  * in the Software without restriction, including without limitation the rights
+ *  * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  * copies of the Software, and to permit persons to whom the Software is
+ *  * furnished to do so, subject to the following conditions:
+ *  *
+ *  * The above copyright notice and this permission notice shall be included in all
+ *  * copies or substantial portions of the Software.
+ *  *
+ *  * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  * SOFTWARE.
+ *
+ */
+
+package org.eventa.core.snapshot;
+
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.log4j.Log4j2;
+import org.eventa.core.aggregates.AggregateRoot;
+import org.eventa.core.aggregates.Snapshot;
+import org.eventa.core.config.EventStoreProperties;
+import org.eventa.core.config.EventaProperties;
+import org.eventa.core.repository.SnapshotRepository;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.FindAndReplaceOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+@Log4j2
+@Component
+@RequiredArgsConstructor
+public class SnapshotManager {
+
+    private final SnapshotRepository snapshotRepository;
+    private final MongoTemplate mongoTemplate;
+    private final SnapshotCodec snapshotCodec;
+    private final EventaProperties eventaProperties;
+    private final ExecutorService snapshotExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "eventa-snapshot");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public Optional<Snapshot> findLatest(UUID aggregateId) {
+        if (!isEnabled()) {
+            return Optional.empty();
+        }
+        try {
+            return snapshotRepository.findById(aggregateId);
+        } catch (Exception e) {
+            log.warn("Failed to read snapshot of aggregate {}, replaying full stream", aggregateId, e);
+            return Optional.empty();
+        }
+    }
+
+    public void snapshotIfDue(AggregateRoot aggregate, int previousVersion) {
+        int interval = aggregate.getSnapshotInterval();
+        if (interval <= 0 || aggregate.getId() == null || !isEnabled()) {
+            return;
+        }
+        // versions are zero based, compare the number of events on both sides of the commit
+        if ((previousVersion + 1) / interval == (aggregate.getVersion() + 1) / interval) {
+            return;
+        }
+        // encode on the caller so the stored state cannot drift from the committed version
+        byte[] payload = snapshotCodec.encode(aggregate);
+        aggregate.setEncodedSize(payload.length);
+        Snapshot snapshot = new Snapshot(aggregate.getId(), aggregate.getVersion(), null, payload);
+        snapshotExecutor.execute(() -> save(snapshot));
+    }
+
+    public void restore(AggregateRoot aggregate, Snapshot snapshot) {
+        if (snapshot.getPayload() != null) {
+            snapshotCodec.decode(snapshot.getPayload(), aggregate);
+            aggregate.setEncodedSize(snapshot.getPayload().length);
+        }
+        aggregate.restoreSnapshot(snapshot);
+    }
+
+    // snapshots are stored in Mongo, they would outlive an in-memory event stream and its replay is cheap anyway
+    private boolean isEnabled() {
+        return eventaProperties.getEventStore().getType() == EventStoreProperties.Type.MONGO;
+    }
+
+    private void save(Snapshot snapshot) {
+        // never let a late write replace a newer snapshot of the same aggregate
+        Query query = new Query(Criteria.where("_id").is(snapshot.getId()).and("version").lt(snapshot.getVersion()));
+        try {
+            mongoTemplate.findAndReplace(query, snapshot, FindAndReplaceOptions.options().upsert());
+        } catch (DuplicateKeyException e) {
+            log.debug("Newer snapshot already stored for aggregate {}", snapshot.getId());
+        } catch (Exception e) {
+            log.error("Failed to store snapshot of aggregate {}", snapshot.getId(), e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        snapshotExecutor.shutdown();
+    }
+}
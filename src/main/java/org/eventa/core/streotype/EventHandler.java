@@ -35,4 +35,9 @@ import java.lang.annotation.Target;
 @Target({ElementType.CONSTRUCTOR, ElementType.METHOD})
 public @interface EventHandler {
     Class<?> value() default Object.class;
+
+    // handlers taking a List of events receive micro-batches of up to batchSize events, flushed after batchTimeoutMs at the latest
+    int batchSize() default 100;
+
+    long batchTimeoutMs() default 50;
 }
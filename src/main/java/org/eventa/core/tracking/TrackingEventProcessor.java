@@ -0,0 +1,396 @@
+/*
+ *
+ *  * MIT License
+ *  *
+ *  * Copyright (c) 2024 Partha Sutradhar.
+ *  *
+ *  * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  * of this software and associated documentation files (the "Software"), to deal
+ *  * in the Software without restriction, including without limitation the rights
+ *  * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  * copies of the Software, and to permit persons to whom the Software is
+ *  * furnished to do so, subject to the following conditions:
+ *  *
+ *  * The above copyright notice and this permission notice shall be included in all
+ *  * copies or substantial portions of the Software.
+ *  *
+ *  * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  * SOFTWARE.
+ *
+ */
+
+package org.eventa.core.tracking;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.log4j.Log4j2;
+import org.apache.curator.framework.recipes.leader.LeaderLatch;
+import org.eventa.core.config.ConditionalOnMongoEventStore;
+import org.eventa.core.config.EventaProperties;
+import org.eventa.core.config.TrackingProperties;
+import org.eventa.core.events.BaseEvent;
+import org.eventa.core.eventstore.EventModel;
+import org.eventa.core.eventstore.EventPositionAllocator;
+import org.eventa.core.registry.EventHandlerRegistry;
+import org.eventa.core.registry.HandlerInvoker;
+import org.eventa.core.serializer.EventSerializers;
+import org.eventa.core.streotype.DisableReplay;
+import org.eventa.core.streotype.EventHandler;
+import org.eventa.core.streotype.ProjectionGroup;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+import org.springframework.util.ClassUtils;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+// One tracking processor per @ProjectionGroup. A group without a live token is rebuilt from the event store:
+// the leader reads events in global position order, never past a position whose save has not committed yet, spreads
+// each batch over segment workers keyed by aggregate id and stores the token after every batch. At the head it
+// stores the last allocated position as the handover position: Kafka delivers the events after it to the group on
+// every node, the replay goes on until it has handled everything up to it. Handlers must tolerate redelivery.
+@Log4j2
+@Component
+@ConditionalOnMongoEventStore
+@ConditionalOnProperty(name = "eventa.tracking.enabled", havingValue = "true")
+public class TrackingEventProcessor {
+
+    private final MongoTemplate mongoTemplate;
+    private final ApplicationContext applicationContext;
+    private final TrackingProperties tracking;
+    private final ObjectProvider<LeaderLatch> leaderLatchProvider;
+    private final EventSerializers eventSerializers;
+    private final EventHandlerRegistry eventHandlerRegistry;
+    private final EventPositionAllocator eventPositionAllocator;
+    // handover positions never change while the token exists, so a node caches them once seen
+    private final Map<Class<?>, Long> handovers = new ConcurrentHashMap<>();
+    private final Map<Class<?>, Map<Class<?>, HandlerInvoker>> handlers = new LinkedHashMap<>();
+    // the gap each group waits at, only touched by the tracking thread
+    private final Map<Class<?>, Gap> gaps = new HashMap<>();
+
+    @Value("${eventa.mongodb.backfill-positions:true}")
+    private boolean backfillPositions;
+
+    private volatile boolean running;
+    private Thread worker;
+    private ExecutorService[] segments;
+
+    public TrackingEventProcessor(MongoTemplate mongoTemplate,
+                                  ApplicationContext applicationContext,
+                                  EventaProperties eventaProperties,
+                                  ObjectProvider<LeaderLatch> leaderLatchProvider,
+                                  EventSerializers eventSerializers,
+                                  EventHandlerRegistry eventHandlerRegistry,
+                                  EventPositionAllocator eventPositionAllocator) {
+        this.mongoTemplate = mongoTemplate;
+        this.applicationContext = applicationContext;
+        this.tracking = eventaProperties.getTracking();
+        this.leaderLatchProvider = leaderLatchProvider;
+        this.eventSerializers = eventSerializers;
+        this.eventHandlerRegistry = eventHandlerRegistry;
+        this.eventPositionAllocator = eventPositionAllocator;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        for (String beanName : applicationContext.getBeanNamesForAnnotation(ProjectionGroup.class)) {
+            Class<?> groupClass = ClassUtils.getUserClass(applicationContext.getType(beanName));
+            // the same invokers the Kafka dispatch path uses
+            Map<Class<?>, HandlerInvoker> groupHandlers = eventHandlerRegistry.getInvokersOf(groupClass);
+            if (!groupHandlers.isEmpty()) {
+                handlers.put(groupClass, groupHandlers);
+            }
+        }
+        int segmentCount = Math.max(1, tracking.getSegments());
+        segments = new ExecutorService[segmentCount];
+        for (int i = 0; i < segmentCount; i++) {
+            String name = "eventa-tracking-segment-" + i;
+            segments[i] = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, name);
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        running = true;
+        worker = new Thread(this::trackLoop, "eventa-tracking");
+        worker.setDaemon(true);
+        worker.start();
+        log.info("Tracking event processors started for {} projection groups.", handlers.size());
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        if (worker != null) {
+            worker.interrupt();
+            worker.join(TimeUnit.SECONDS.toMillis(5));
+        }
+        if (segments != null) {
+            for (ExecutorService segment : segments) {
+                segment.shutdown();
+            }
+        }
+    }
+
+    // Consulted by the Kafka dispatch path for every event. Until this node has seen the handover position it
+    // reads the token again each time: an event that arrives before the handover is published already, so its
+    // position is at most the handover position chosen later and the replay handles it. Events without a position
+    // are delivered.
+    public boolean isLive(Class<?> projectionGroup, Long position) {
+        Long handover = handovers.get(projectionGroup);
+        if (handover == null) {
+            TrackingToken token = mongoTemplate.findById(processorName(projectionGroup), TrackingToken.class);
+            if (token == null || token.getHandoverPosition() == null) {
+                return false;
+            }
+            handover = token.getHandoverPosition();
+            handovers.put(projectionGroup, handover);
+        }
+        return position == null || position > handover;
+    }
+
+    // drops the token of the group, the leader rebuilds the projection from the first event; other nodes keep their
+    // old handover position and deliver the events after it twice, once from Kafka and once from the replay
+    public void reset(Class<?> projectionGroup) {
+        mongoTemplate.remove(new Query(Criteria.where("_id").is(processorName(projectionGroup))), TrackingToken.class);
+        handovers.remove(projectionGroup);
+    }
+
+    private void trackLoop() {
+        while (running) {
+            try {
+                for (Class<?> group : handlers.keySet()) {
+                    TrackingToken token = mongoTemplate.findById(processorName(group), TrackingToken.class);
+                    if ((token == null || !token.isLive()) && isLeader()) {
+                        catchUp(group, token);
+                    }
+                }
+                Thread.sleep(tracking.getPollIntervalMs());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                log.error("Tracking event processor failed", e);
+                try {
+                    Thread.sleep(tracking.getPollIntervalMs());
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    private void catchUp(Class<?> group, TrackingToken existing) {
+        // backfilled events get positions below the live ones, a replay started before the backfill would miss them
+        if (backfillPositions && mongoTemplate.exists(new Query(Criteria.where("position").exists(false)), EventModel.class)) {
+            log.info("Waiting for stored events to get a position before replaying {}", processorName(group));
+            return;
+        }
+        TrackingToken token = existing;
+        if (token == null) {
+            token = TrackingToken.builder()
+                    .processorName(processorName(group))
+                    .lastPosition(lowestPosition() - 1)
+                    .replayStartedAt(new Date())
+                    .build();
+            mongoTemplate.save(token);
+        }
+        Map<Class<?>, HandlerInvoker> groupHandlers = handlers.get(group);
+        List<String> eventTypes = groupHandlers.keySet().stream().map(Class::getTypeName).toList();
+        Object bean = applicationContext.getBean(group);
+        log.info("Replaying {} after position {}", token.getProcessorName(), token.getLastPosition());
+
+        while (running && isLeader()) {
+            Long handover = token.getHandoverPosition();
+            Head head = scanAhead(group, token.getLastPosition(), handover);
+            if (head.safePosition() > token.getLastPosition()) {
+                List<EventModel> batch = readBatch(eventTypes, token.getLastPosition(), head.safePosition());
+                if (!batch.isEmpty()) {
+                    process(bean, groupHandlers, batch, token.getReplayStartedAt());
+                }
+                token.setLastPosition(head.safePosition());
+                token.setUpdatedAt(new Date());
+                mongoTemplate.save(token);
+            }
+            if (head.blocked()) {
+                // a save holding the next position is still in flight, try again on the next poll
+                return;
+            }
+            if (handover != null && token.getLastPosition() >= handover) {
+                token.setLive(true);
+                token.setUpdatedAt(new Date());
+                mongoTemplate.save(token);
+                log.info("{} caught up, now live.", token.getProcessorName());
+                return;
+            }
+            if (handover == null && !head.more()) {
+                // every event published so far has a position up to here, Kafka takes over after it
+                token.setHandoverPosition(Math.max(token.getLastPosition(), eventPositionAllocator.current()));
+                token.setUpdatedAt(new Date());
+                mongoTemplate.save(token);
+                handovers.put(group, token.getHandoverPosition());
+            }
+        }
+    }
+
+    // Positions are allocated before the insert, so they do not arrive in commit order. Walks the positions after
+    // lastPosition, of every event type, up to the first one that is missing: everything below it is committed and
+    // nothing can show up there later. A missing position is waited for until gapTimeoutMs. After the handover the
+    // walk ends at the handover position, positions missing up to it are gaps as well.
+    private Head scanAhead(Class<?> group, long lastPosition, Long upTo) {
+        Criteria after = Criteria.where("position").gt(lastPosition);
+        Query query = new Query(upTo != null ? after.lte(upTo) : after)
+                .with(Sort.by(Sort.Direction.ASC, "position"))
+                .limit(tracking.getBatchSize());
+        query.fields().include("position", "timestamp");
+        List<EventModel> ahead = mongoTemplate.find(query, EventModel.class);
+        long safePosition = lastPosition;
+        for (EventModel eventModel : ahead) {
+            long expected = nextPosition(safePosition);
+            if (eventModel.getPosition() != expected && !gapExpired(group, expected, eventModel.getTimestamp())) {
+                return new Head(safePosition, true, true);
+            }
+            safePosition = eventModel.getPosition();
+        }
+        boolean more = ahead.size() >= tracking.getBatchSize();
+        if (upTo != null && !more && nextPosition(safePosition) <= upTo) {
+            if (!gapExpired(group, nextPosition(safePosition), null)) {
+                return new Head(safePosition, true, true);
+            }
+            safePosition = upTo;
+        }
+        return new Head(safePosition, false, more);
+    }
+
+    // 0 is never allocated, backfilled positions end at -1 and allocated ones start at 1
+    private static long nextPosition(long position) {
+        return position == -1 ? 1 : position + 1;
+    }
+
+    // the event after the gap took its position later than the missing one, once that event is older than the
+    // timeout the gap is too, which lets a replay pass old gaps without waiting for each
+    private boolean gapExpired(Class<?> group, long position, Date storedAfterGap) {
+        long now = System.currentTimeMillis();
+        if (storedAfterGap != null && now - storedAfterGap.getTime() >= tracking.getGapTimeoutMs()) {
+            return true;
+        }
+        Gap gap = gaps.get(group);
+        if (gap == null || gap.position() != position) {
+            gaps.put(group, new Gap(position, now));
+            return tracking.getGapTimeoutMs() <= 0;
+        }
+        if (now - gap.seenAt() < tracking.getGapTimeoutMs()) {
+            return false;
+        }
+        log.warn("No event stored at position {} after {} ms, {} skips it", position, tracking.getGapTimeoutMs(), processorName(group));
+        return true;
+    }
+
+    private long lowestPosition() {
+        Query query = new Query(Criteria.where("position").exists(true))
+                .with(Sort.by(Sort.Direction.ASC, "position"))
+                .limit(1);
+        query.fields().include("position");
+        EventModel lowest = mongoTemplate.findOne(query, EventModel.class);
+        return lowest != null ? Math.min(0, lowest.getPosition()) : 0;
+    }
+
+    // an index range read on eventType/position, only the types the group handles leave the database
+    private List<EventModel> readBatch(List<String> eventTypes, long afterPosition, long upToPosition) {
+        Query query = new Query(Criteria.where("eventType").in(eventTypes).and("position").gt(afterPosition).lte(upToPosition))
+                .with(Sort.by(Sort.Direction.ASC, "position"));
+        query.fields().include("position", "aggregateIdentifier", "eventType", "baseEvent", "format", "payload", "timestamp");
+        List<EventModel> batch = mongoTemplate.find(query, EventModel.class);
+        batch.forEach(eventSerializers::resolve);
+        return batch;
+    }
+
+    private void process(Object bean, Map<Class<?>, HandlerInvoker> groupHandlers, List<EventModel> batch, Date replayStartedAt) {
+        Map<Integer, List<EventModel>> bySegment = new LinkedHashMap<>();
+        for (EventModel eventModel : batch) {
+            int segment = Math.floorMod(eventModel.getAggregateIdentifier().hashCode(), segments.length);
+            bySegment.computeIfAbsent(segment, key -> new ArrayList<>()).add(eventModel);
+        }
+        List<CompletableFuture<Void>> work = new ArrayList<>(bySegment.size());
+        bySegment.forEach((segment, events) -> work.add(CompletableFuture.runAsync(() -> {
+            // consecutive events of one batch handler are delivered as one list, order is kept
+            HandlerInvoker pendingHandler = null;
+            List<BaseEvent> pending = new ArrayList<>();
+            for (EventModel eventModel : events) {
+                HandlerInvoker handler = groupHandlers.get(eventModel.getBaseEvent().getClass());
+                boolean replay = replayStartedAt != null && eventModel.getTimestamp() != null
+                        && eventModel.getTimestamp().before(replayStartedAt);
+                if (handler == null || (replay && handler.getMethod().isAnnotationPresent(DisableReplay.class))) {
+                    continue;
+                }
+                if (pendingHandler != null && (handler != pendingHandler || pending.size() >= batchSizeOf(handler))) {
+                    invoke(bean, pendingHandler, new ArrayList<>(pending));
+                    pending.clear();
+                    pendingHandler = null;
+                }
+                if (EventHandlerRegistry.isBatchHandler(handler.getMethod())) {
+                    pendingHandler = handler;
+                    pending.add(eventModel.getBaseEvent());
+                } else {
+                    invoke(bean, handler, eventModel.getBaseEvent());
+                }
+            }
+            if (pendingHandler != null) {
+                invoke(bean, pendingHandler, pending);
+            }
+        }, segments[segment])));
+        // the token only moves once every segment has handled its share of the batch
+        CompletableFuture.allOf(work.toArray(CompletableFuture[]::new)).join();
+    }
+
+    private static void invoke(Object bean, HandlerInvoker handler, Object argument) {
+        try {
+            handler.invoke(bean, argument);
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to replay events with " + handler.getMethod().getName(), e);
+        }
+    }
+
+    private static int batchSizeOf(HandlerInvoker handler) {
+        return Math.max(1, handler.getMethod().getAnnotation(EventHandler.class).batchSize());
+    }
+
+    private boolean isLeader() {
+        LeaderLatch leaderLatch = leaderLatchProvider.getIfAvailable();
+        return leaderLatch == null || leaderLatch.hasLeadership();
+    }
+
+    private static String processorName(Class<?> projectionGroup) {
+        return projectionGroup.getName();
+    }
+
+    // safePosition: every position up to it is committed, blocked: stopped at a gap, more: the scan hit its limit
+    private record Head(long safePosition, boolean blocked, boolean more) {
+    }
+
+    private record Gap(long position, long seenAt) {
+    }
+}
@@ -0,0 +1,144 @@
+/*
+ *
+ *  * MIT License
+ *  *
+ *  * Copyright (c) 2024 Partha Sutradhar.
+ *  *
+ *  * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  * of this software and associated documentation files (the "Software"), to deal
+ *  * in the Software without restriction, including without limitation the rights
+ *  * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  * copies of the Software, and to permit persons to whom the Software is
+ *  * furnished to do so, subject to the following conditions:
+ *  *
+ *  * The above copyright notice and this permission notice shall be included in all
+ *  * copies or substantial portions of the Software.
+ *  *
+ *  * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  * SOFTWARE.
+ *
+ */
+
+package org.eventa.core.consumer;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.listener.MessageListenerContainer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class DispatchBackpressureTest {
+
+    private final KafkaListenerEndpointRegistry registry = mock(KafkaListenerEndpointRegistry.class);
+    private final MessageListenerContainer container = mock(MessageListenerContainer.class);
+
+    @Test
+    void pausesAtTheHighAndResumesAtTheLowWatermark() {
+        when(registry.getListenerContainer(DispatchBackpressure.LISTENER_ID)).thenReturn(container);
+        DispatchBackpressure backpressure = new DispatchBackpressure(registry, 10, 3);
+
+        for (int i = 0; i < 9; i++) {
+            backpressure.submitted();
+        }
+        assertThat(backpressure.isPaused()).isFalse();
+        backpressure.submitted();
+        backpressure.submitted();
+        assertThat(backpressure.isPaused()).isTrue();
+        verify(container, times(1)).pause();
+
+        for (int i = 0; i < 7; i++) {
+            backpressure.completed();
+        }
+        assertThat(backpressure.getInFlight()).isEqualTo(4);
+        assertThat(backpressure.isPaused()).isTrue();
+        backpressure.completed();
+        assertThat(backpressure.isPaused()).isFalse();
+        verify(container, times(1)).resume();
+        assertThat(backpressure.getPauseCount()).isEqualTo(1);
+    }
+
+    @Test
+    void staysUnpausedWithoutAListenerContainer() {
+        DispatchBackpressure backpressure = new DispatchBackpressure(registry, 2, 0);
+
+        backpressure.submitted();
+        backpressure.submitted();
+        backpressure.completed();
+        backpressure.completed();
+
+        assertThat(backpressure.isPaused()).isFalse();
+        assertThat(backpressure.getPauseCount()).isZero();
+        verify(container, never()).pause();
+    }
+
+    @Test
+    void concurrentSubmitAndCompleteLeaveTheListenerRunning() throws Exception {
+        AtomicInteger pauses = new AtomicInteger();
+        AtomicInteger resumes = new AtomicInteger();
+        AtomicInteger pausedNow = new AtomicInteger();
+        AtomicInteger doublePauses = new AtomicInteger();
+        doAnswer(invocation -> {
+            pauses.incrementAndGet();
+            if (pausedNow.incrementAndGet() != 1) {
+                doublePauses.incrementAndGet();
+            }
+            return null;
+        }).when(container).pause();
+        doAnswer(invocation -> {
+            resumes.incrementAndGet();
+            pausedNow.decrementAndGet();
+            return null;
+        }).when(container).resume();
+        when(registry.getListenerContainer(DispatchBackpressure.LISTENER_ID)).thenReturn(container);
+        DispatchBackpressure backpressure = new DispatchBackpressure(registry, 16, 4);
+
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<CompletableFuture<Void>> work = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                work.add(CompletableFuture.runAsync(() -> {
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    for (int round = 0; round < 2_000; round++) {
+                        int burst = 1 + random.nextInt(8);
+                        for (int i = 0; i < burst; i++) {
+                            backpressure.submitted();
+                        }
+                        for (int i = 0; i < burst; i++) {
+                            backpressure.completed();
+                        }
+                    }
+                }, executor));
+            }
+            CompletableFuture.allOf(work.toArray(CompletableFuture[]::new)).get(30, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdown();
+        }
+
+        assertThat(backpressure.getInFlight()).isZero();
+        assertThat(backpressure.isPaused()).isFalse();
+        assertThat(doublePauses).hasValue(0);
+        assertThat(resumes.get()).isEqualTo(pauses.get());
+        assertThat(backpressure.getPauseCount()).isEqualTo(pauses.get());
+    }
+}
@@ -0,0 +1,156 @@
+/*
+ *
+ *  * MIT License
+ *  *
+ *  * Copyright (c) 2024 Partha Sutradhar.
+ *  *
+ *  * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  * of this software and associated documentation files (the "Software"), to deal
+ *  * in the Software without restriction, including without limitation the rights
+ *  * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  * copies of the Software, and to permit persons to whom the Software is
+ *  * furnished to do so, subject to the following conditions:
+ *  *
+ *  * The above copyright notice and this permission notice shall be included in all
+ *  * copies or substantial portions of the Software.
+ *  *
+ *  * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  * SOFTWARE.
+ *
+ */
+
+package org.eventa.core.consumer;
+
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.eventa.core.dispatcher.EventDispatcher;
+import org.eventa.core.events.BaseEvent;
+import org.eventa.core.support.model.IncrementedEvent;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class KafkaBatchEventConsumerTest {
+
+    private static final String TOPIC = "BaseEvent";
+
+    private final EventDispatcher eventDispatcher = mock(EventDispatcher.class);
+    private final Consumer<?, ?> consumer = mock(Consumer.class);
+    private final KafkaBatchEventConsumer kafkaBatchEventConsumer = new KafkaBatchEventConsumer(eventDispatcher, 4);
+
+    @AfterEach
+    void tearDown() {
+        kafkaBatchEventConsumer.shutdown();
+    }
+
+    @Test
+    void keepsTheOrderOfEachAggregateAcrossParallelLanes() {
+        Map<UUID, List<Long>> handled = new ConcurrentHashMap<>();
+        AtomicInteger active = new AtomicInteger();
+        AtomicInteger maxActive = new AtomicInteger();
+        when(eventDispatcher.handleDeferred(any())).thenAnswer(invocation -> {
+            IncrementedEvent event = invocation.getArgument(0);
+            maxActive.accumulateAndGet(active.incrementAndGet(), Math::max);
+            handled.computeIfAbsent(event.getId(), key -> new CopyOnWriteArrayList<>()).add(event.getAmount());
+            Thread.yield();
+            active.decrementAndGet();
+            return CompletableFuture.completedFuture(null);
+        });
+        List<UUID> ids = List.of(UUID.randomUUID(), UUID.randomUUID(), UUID.randomUUID(), UUID.randomUUID(),
+                UUID.randomUUID(), UUID.randomUUID(), UUID.randomUUID(), UUID.randomUUID());
+        int eventsPerAggregate = 200;
+        List<ConsumerRecord<UUID, BaseEvent>> records = new ArrayList<>();
+        for (int i = 0; i < eventsPerAggregate; i++) {
+            for (UUID id : ids) {
+                records.add(record(0, records.size(), id, i));
+            }
+        }
+
+        kafkaBatchEventConsumer.consume(records, consumer);
+
+        for (UUID id : ids) {
+            assertThat(handled.get(id)).containsExactlyElementsOf(LongStream.range(0, eventsPerAggregate).boxed().toList());
+        }
+        assertThat(maxActive.get()).isLessThanOrEqualTo(4);
+        verify(consumer).commitSync(Map.of(new TopicPartition(TOPIC, 0), new OffsetAndMetadata(records.size())));
+        verify(consumer, never()).seek(any(TopicPartition.class), anyLong());
+    }
+
+    @Test
+    void commitsUpToTheFirstFailedRecordOfEachPartitionAndRewindsIt() {
+        UUID failing = UUID.randomUUID();
+        UUID healthy = UUID.randomUUID();
+        when(eventDispatcher.handleDeferred(any())).thenAnswer(invocation -> {
+            IncrementedEvent event = invocation.getArgument(0);
+            if (event.getId().equals(failing) && event.getAmount() == 2) {
+                return CompletableFuture.failedFuture(new IllegalStateException("handler failed"));
+            }
+            return CompletableFuture.completedFuture(null);
+        });
+        List<ConsumerRecord<UUID, BaseEvent>> records = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            records.add(record(0, 10 + i, failing, i));
+            records.add(record(1, 20 + i, healthy, i));
+        }
+
+        kafkaBatchEventConsumer.consume(records, consumer);
+
+        TopicPartition failingPartition = new TopicPartition(TOPIC, 0);
+        TopicPartition healthyPartition = new TopicPartition(TOPIC, 1);
+        verify(consumer).commitSync(Map.of(
+                failingPartition, new OffsetAndMetadata(12),
+                healthyPartition, new OffsetAndMetadata(25)));
+        verify(consumer).seek(failingPartition, 12L);
+        verify(consumer, never()).seek(healthyPartition, 20L);
+    }
+
+    @Test
+    void leavesTheRestOfALaneForRedeliveryWhenDispatchThrows() {
+        UUID id = UUID.randomUUID();
+        List<Long> handled = new CopyOnWriteArrayList<>();
+        when(eventDispatcher.handleDeferred(any())).thenAnswer(invocation -> {
+            IncrementedEvent event = invocation.getArgument(0);
+            if (event.getAmount() == 1) {
+                throw new IllegalStateException("dispatch failed");
+            }
+            handled.add(event.getAmount());
+            return CompletableFuture.completedFuture(null);
+        });
+        List<ConsumerRecord<UUID, BaseEvent>> records = List.of(record(0, 0, id, 0), record(0, 1, id, 1), record(0, 2, id, 2));
+
+        kafkaBatchEventConsumer.consume(records, consumer);
+
+        assertThat(handled).containsExactly(0L);
+        TopicPartition partition = new TopicPartition(TOPIC, 0);
+        verify(consumer).commitSync(Map.of(partition, new OffsetAndMetadata(1)));
+        verify(consumer).seek(partition, 1L);
+    }
+
+    private static ConsumerRecord<UUID, BaseEvent> record(int partition, long offset, UUID id, long amount) {
+        return new ConsumerRecord<>(TOPIC, partition, offset, id, IncrementedEvent.builder().id(id).amount(amount).build());
+    }
+}
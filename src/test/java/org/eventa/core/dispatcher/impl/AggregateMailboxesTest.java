@@ -0,0 +1,219 @@
+/*
+ *
+ *  * MIT License
+ *  *
+ *  * Copyright (c) 2024 Partha Sutradhar.
+ *  *
+ *  * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  * of this software and associated documentation files (the "Software"), to deal
+ *  * in the Software without restriction, including without limitation the rights
+ *  * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  * copies of the Software, and to permit persons to whom the Software is
+ *  * furnished to do so, subject to the following conditions:
+ *  *
+ *  * The above copyright notice and this permission notice shall be included in all
+ *  * copies or substantial portions of the Software.
+ *  *
+ *  * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  * SOFTWARE.
+ *
+ */
+
+package org.eventa.core.dispatcher.impl;
+
+import org.eventa.core.aggregates.AggregateRoot;
+import org.eventa.core.dispatcher.impl.AggregateMailboxes.PendingCommand;
+import org.eventa.core.support.model.CounterAggregate;
+import org.eventa.core.support.model.IncrementCommand;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class AggregateMailboxesTest {
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(8);
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void drainsEachAggregateSeriallyInSubmissionOrder() throws Exception {
+        Map<UUID, AtomicInteger> active = new ConcurrentHashMap<>();
+        Map<UUID, List<Long>> handled = new ConcurrentHashMap<>();
+        AtomicInteger overlaps = new AtomicInteger();
+        AggregateMailboxes mailboxes = new AggregateMailboxes(executor, processor((batch, loaded) -> {
+            UUID id = batch.get(0).command().getId();
+            if (active.computeIfAbsent(id, key -> new AtomicInteger()).incrementAndGet() != 1) {
+                overlaps.incrementAndGet();
+            }
+            for (PendingCommand pendingCommand : batch) {
+                handled.computeIfAbsent(id, key -> new CopyOnWriteArrayList<>()).add(amountOf(pendingCommand));
+                pendingCommand.result().complete(id.toString());
+            }
+            Thread.yield();
+            active.get(id).decrementAndGet();
+            return null;
+        }), 16, 0);
+
+        int commandsPerAggregate = 500;
+        List<UUID> ids = List.of(UUID.randomUUID(), UUID.randomUUID(), UUID.randomUUID(), UUID.randomUUID());
+        ExecutorService submitters = Executors.newFixedThreadPool(ids.size());
+        List<CompletableFuture<String>> results = new CopyOnWriteArrayList<>();
+        try {
+            CompletableFuture.allOf(ids.stream().map(id -> CompletableFuture.runAsync(() -> {
+                for (long i = 0; i < commandsPerAggregate; i++) {
+                    results.add(mailboxes.submit(increment(id, i), null));
+                }
+            }, submitters)).toArray(CompletableFuture[]::new)).get(10, TimeUnit.SECONDS);
+        } finally {
+            submitters.shutdown();
+        }
+
+        CompletableFuture.allOf(results.toArray(CompletableFuture[]::new)).get(10, TimeUnit.SECONDS);
+        assertThat(overlaps).hasValue(0);
+        for (UUID id : ids) {
+            assertThat(handled.get(id)).containsExactlyElementsOf(LongStream.range(0, commandsPerAggregate).boxed().toList());
+        }
+        awaitNoMailboxes(mailboxes);
+    }
+
+    @Test
+    void coalescesCommandsQueuedWhileADrainIsBusy() throws Exception {
+        CountDownLatch firstBatchStarted = new CountDownLatch(1);
+        CountDownLatch releaseFirstBatch = new CountDownLatch(1);
+        List<Integer> batchSizes = new CopyOnWriteArrayList<>();
+        AggregateMailboxes mailboxes = new AggregateMailboxes(executor, processor((batch, loaded) -> {
+            if (batchSizes.isEmpty()) {
+                firstBatchStarted.countDown();
+                await(releaseFirstBatch);
+            }
+            batchSizes.add(batch.size());
+            batch.forEach(pendingCommand -> pendingCommand.result().complete(null));
+            return null;
+        }), 4, 0);
+        UUID id = UUID.randomUUID();
+
+        List<CompletableFuture<String>> results = new ArrayList<>();
+        results.add(mailboxes.submit(increment(id, 0), null));
+        assertThat(firstBatchStarted.await(10, TimeUnit.SECONDS)).isTrue();
+        for (long i = 1; i <= 10; i++) {
+            results.add(mailboxes.submit(increment(id, i), null));
+        }
+        releaseFirstBatch.countDown();
+
+        CompletableFuture.allOf(results.toArray(CompletableFuture[]::new)).get(10, TimeUnit.SECONDS);
+        assertThat(batchSizes).containsExactly(1, 4, 4, 2);
+        awaitNoMailboxes(mailboxes);
+    }
+
+    @Test
+    void failedBatchDropsTheInstanceAndLeavesLaterBatchesRunning() throws Exception {
+        CountDownLatch firstBatchStarted = new CountDownLatch(1);
+        CountDownLatch releaseFirstBatch = new CountDownLatch(1);
+        AggregateRoot instance = new CounterAggregate();
+        List<AggregateRoot> loadedPerBatch = new CopyOnWriteArrayList<>();
+        List<AggregateRoot> released = new CopyOnWriteArrayList<>();
+        AggregateMailboxes mailboxes = new AggregateMailboxes(executor, new AggregateMailboxes.MailboxProcessor() {
+            @Override
+            public AggregateRoot process(List<PendingCommand> batch, AggregateRoot loaded) {
+                if (loadedPerBatch.isEmpty()) {
+                    firstBatchStarted.countDown();
+                    await(releaseFirstBatch);
+                }
+                loadedPerBatch.add(loaded == null ? new CounterAggregate() : loaded);
+                if (batch.stream().anyMatch(pendingCommand -> amountOf(pendingCommand) < 0)) {
+                    throw new IllegalStateException("rejected");
+                }
+                batch.forEach(pendingCommand -> pendingCommand.result().complete(null));
+                return instance;
+            }
+
+            @Override
+            public void release(AggregateRoot aggregate) {
+                released.add(aggregate);
+            }
+        }, 1, 0);
+        UUID id = UUID.randomUUID();
+
+        CompletableFuture<String> first = mailboxes.submit(increment(id, 1), null);
+        assertThat(firstBatchStarted.await(10, TimeUnit.SECONDS)).isTrue();
+        CompletableFuture<String> second = mailboxes.submit(increment(id, 2), null);
+        CompletableFuture<String> failing = mailboxes.submit(increment(id, -1), null);
+        CompletableFuture<String> last = mailboxes.submit(increment(id, 3), null);
+        releaseFirstBatch.countDown();
+
+        CompletableFuture.allOf(first, second, last).get(10, TimeUnit.SECONDS);
+        assertThatThrownBy(() -> failing.get(10, TimeUnit.SECONDS)).hasCauseInstanceOf(IllegalStateException.class);
+        // the second batch reuses the instance, the batch after the failure starts from a fresh load
+        assertThat(loadedPerBatch.get(1)).isSameAs(instance);
+        assertThat(loadedPerBatch.get(3)).isNotSameAs(instance);
+        // the drain releases the instance after completing the last result
+        awaitNoMailboxes(mailboxes);
+        assertThat(released).containsExactly(instance);
+    }
+
+    private interface BatchHandler {
+        AggregateRoot process(List<PendingCommand> batch, AggregateRoot loaded);
+    }
+
+    private static AggregateMailboxes.MailboxProcessor processor(BatchHandler handler) {
+        return new AggregateMailboxes.MailboxProcessor() {
+            @Override
+            public AggregateRoot process(List<PendingCommand> batch, AggregateRoot loaded) {
+                return handler.process(batch, loaded);
+            }
+
+            @Override
+            public void release(AggregateRoot aggregate) {
+            }
+        };
+    }
+
+    private static IncrementCommand increment(UUID id, long amount) {
+        return IncrementCommand.builder().id(id).amount(amount).build();
+    }
+
+    private static long amountOf(PendingCommand pendingCommand) {
+        return ((IncrementCommand) pendingCommand.command()).getAmount();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // the mailbox is removed in the drain's finally block, after the last result was completed
+    private static void awaitNoMailboxes(AggregateMailboxes mailboxes) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (mailboxes.size() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertThat(mailboxes.size()).isZero();
+    }
+}
@@ -0,0 +1,217 @@
+/*
+ *
+ *  * MIT License
+ *  *
+ *  * Copyright (c) 2024 Partha Sutradhar.
+ *  *
+ *  * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  * of this software and associated documentation files (the "Software"), to deal
+ *  * in the Software without restriction, including without limitation the rights
+ *  * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  * copies of the Software, and to permit persons to whom the Software is
+ *  * furnished to do so, subject to the following conditions:
+ *  *
+ *  * The above copyright notice and this permission notice shall be included in all
+ *  * copies or substantial portions of the Software.
+ *  *
+ *  * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  * SOFTWARE.
+ *
+ */
+
+package org.eventa.core.dispatcher.impl;
+
+import org.eventa.core.config.CommandProperties.DispatchMode;
+import org.eventa.core.dispatcher.CommandDispatcher;
+import org.eventa.core.events.BaseEvent;
+import org.eventa.core.eventstore.InMemoryEventStore;
+import org.eventa.core.factory.AggregateFactory;
+import org.eventa.core.support.EventaTestContext;
+import org.eventa.core.support.RecordingEventProducer;
+import org.eventa.core.support.model.CounterAggregate;
+import org.eventa.core.support.model.CreateCounterCommand;
+import org.eventa.core.support.model.IncrementCommand;
+import org.eventa.core.support.model.IncrementedEvent;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CommandDispatcherImplTest {
+
+    private final RecordingEventProducer eventProducer = new RecordingEventProducer();
+    private final CountDownLatch gate = new CountDownLatch(1);
+    private AnnotationConfigApplicationContext context;
+
+    @AfterEach
+    void tearDown() {
+        gate.countDown();
+        if (context != null) {
+            context.close();
+        }
+    }
+
+    @Test
+    void mailboxAppendsTheEventsOfQueuedCommandsInOneWrite() throws Exception {
+        CommandDispatcher commandDispatcher = startMailbox(32, Executors.newSingleThreadExecutor());
+        UUID id = create(commandDispatcher);
+        AtomicInteger appends = new AtomicInteger();
+        eventProducer.onPublish(events -> appends.incrementAndGet());
+
+        List<CompletableFuture<String>> results = holdDrains(() -> sendIncrements(commandDispatcher, id, 1, 10));
+
+        CompletableFuture.allOf(results.toArray(CompletableFuture[]::new)).get(10, TimeUnit.SECONDS);
+        assertThat(appends).hasValue(1);
+        assertThat(versions(id)).containsExactlyElementsOf(IntStream.rangeClosed(0, 10).boxed().toList());
+        assertThat(load(id).getTotal()).isEqualTo(55);
+    }
+
+    @Test
+    void mailboxCatchesUpWithEventsAppendedElsewhereBetweenBatches() throws Exception {
+        CommandDispatcher commandDispatcher = startMailbox(1, Executors.newSingleThreadExecutor());
+        UUID id = create(commandDispatcher);
+        InMemoryEventStore eventStore = context.getBean(InMemoryEventStore.class);
+        AtomicBoolean appendedElsewhere = new AtomicBoolean();
+        // a LOCKING node appends right after the first batch of the drain was stored
+        eventProducer.onPublish(events -> {
+            if (events.get(0) instanceof IncrementedEvent && appendedElsewhere.compareAndSet(false, true)) {
+                int nextVersion = events.get(events.size() - 1).getVersion() + 1;
+                eventStore.saveEvents(id, CounterAggregate.class.getSimpleName(),
+                        List.<BaseEvent>of(IncrementedEvent.builder().id(id).amount(100).build()), nextVersion, false);
+            }
+        });
+
+        List<CompletableFuture<String>> results = holdDrains(() -> sendIncrements(commandDispatcher, id, 1, 2));
+
+        CompletableFuture.allOf(results.toArray(CompletableFuture[]::new)).get(10, TimeUnit.SECONDS);
+        assertThat(versions(id)).containsExactly(0, 1, 2, 3);
+        assertThat(load(id).getTotal()).isEqualTo(103);
+    }
+
+    @Test
+    void failingCommandDoesNotFailTheRestOfItsBatch() throws Exception {
+        CommandDispatcher commandDispatcher = startMailbox(32, Executors.newSingleThreadExecutor());
+        UUID id = create(commandDispatcher);
+
+        List<CompletableFuture<String>> results = holdDrains(() -> List.of(
+                commandDispatcher.sendAsync(IncrementCommand.builder().id(id).amount(1).build()),
+                commandDispatcher.sendAsync(IncrementCommand.builder().id(id).amount(-1).build()),
+                commandDispatcher.sendAsync(IncrementCommand.builder().id(id).amount(2).build())));
+
+        assertThat(results.get(0).get(10, TimeUnit.SECONDS)).isNotNull();
+        assertThatThrownBy(() -> results.get(1).get(10, TimeUnit.SECONDS)).hasCauseInstanceOf(IllegalArgumentException.class);
+        assertThat(results.get(2).get(10, TimeUnit.SECONDS)).isNotNull();
+        assertThat(versions(id)).containsExactly(0, 1, 2);
+        assertThat(load(id).getTotal()).isEqualTo(3);
+    }
+
+    @Test
+    void concurrentSendersKeepEveryAggregateStreamGapFree() throws Exception {
+        CommandDispatcher commandDispatcher = startMailbox(8, Executors.newFixedThreadPool(4));
+        List<UUID> ids = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            ids.add(create(commandDispatcher));
+        }
+        int senders = 8;
+        int commandsPerSender = 200;
+        ExecutorService callers = Executors.newFixedThreadPool(senders);
+        List<CompletableFuture<String>> results = new ArrayList<>();
+        try {
+            List<CompletableFuture<List<CompletableFuture<String>>>> sending = new ArrayList<>();
+            for (int sender = 0; sender < senders; sender++) {
+                sending.add(CompletableFuture.supplyAsync(() -> {
+                    List<CompletableFuture<String>> sent = new ArrayList<>();
+                    for (int i = 0; i < commandsPerSender; i++) {
+                        UUID id = ids.get(i % ids.size());
+                        sent.add(commandDispatcher.sendAsync(IncrementCommand.builder().id(id).amount(1).build()));
+                    }
+                    return sent;
+                }, callers));
+            }
+            for (CompletableFuture<List<CompletableFuture<String>>> sent : sending) {
+                results.addAll(sent.get(10, TimeUnit.SECONDS));
+            }
+        } finally {
+            callers.shutdown();
+        }
+
+        CompletableFuture.allOf(results.toArray(CompletableFuture[]::new)).get(30, TimeUnit.SECONDS);
+        int perAggregate = senders * commandsPerSender / ids.size();
+        for (UUID id : ids) {
+            assertThat(versions(id)).containsExactlyElementsOf(IntStream.rangeClosed(0, perAggregate).boxed().toList());
+            assertThat(load(id).getTotal()).isEqualTo(perAggregate);
+        }
+    }
+
+    private CommandDispatcher startMailbox(int maxBatchSize, ExecutorService commandExecutor) {
+        context = EventaTestContext.start(eventaProperties -> {
+            eventaProperties.getCommand().setMode(DispatchMode.MAILBOX);
+            eventaProperties.getCommand().setMaxBatchSize(maxBatchSize);
+        }, eventProducer, commandExecutor, CounterAggregate.class);
+        return context.getBean(CommandDispatcher.class);
+    }
+
+    private static UUID create(CommandDispatcher commandDispatcher) throws Exception {
+        UUID id = UUID.randomUUID();
+        commandDispatcher.send(CreateCounterCommand.builder().id(id).build());
+        return id;
+    }
+
+    // occupies the command executor while the commands are queued, so the next drain finds all of them
+    private List<CompletableFuture<String>> holdDrains(Supplier<List<CompletableFuture<String>>> sender) {
+        ExecutorService commandExecutor = context.getBean("eventaCommandExecutor", ExecutorService.class);
+        CountDownLatch held = new CountDownLatch(1);
+        commandExecutor.execute(() -> {
+            held.countDown();
+            try {
+                gate.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        try {
+            held.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        List<CompletableFuture<String>> results = sender.get();
+        gate.countDown();
+        return results;
+    }
+
+    private static List<CompletableFuture<String>> sendIncrements(CommandDispatcher commandDispatcher, UUID id, int from, int to) {
+        List<CompletableFuture<String>> results = new ArrayList<>();
+        for (int amount = from; amount <= to; amount++) {
+            results.add(commandDispatcher.sendAsync(IncrementCommand.builder().id(id).amount(amount).build()));
+        }
+        return results;
+    }
+
+    private List<Integer> versions(UUID id) {
+        return context.getBean(InMemoryEventStore.class).getEventsFromAggregate(id).stream().map(BaseEvent::getVersion).toList();
+    }
+
+    private CounterAggregate load(UUID id) throws Exception {
+        return context.getBean(AggregateFactory.class).loadAggregate(id, CounterAggregate.class, false);
+    }
+}
@@ -0,0 +1,192 @@
+/*
+ *
+ *  * MIT License
+ *  *
+ *  * Copyright (c) 2024 Partha Sutradhar.
+ *  *
+ *  * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  * of this software and associated documentation files (the "Software"), to deal
+ *  * in the Software without restriction, including without limitation the rights
+ *  * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  * copies of the Software, and to permit persons to whom the Software is
+ *  * furnished to do so, subject to the following conditions:
+ *  *
+ *  * The above copyright notice and this permission notice shall be included in all
+ *  * copies or substantial portions of the Software.
+ *  *
+ *  * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  * SOFTWARE.
+ *
+ */
+
+package org.eventa.core.dispatcher.impl;
+
+import org.eventa.core.events.BaseEvent;
+import org.eventa.core.registry.HandlerInvoker;
+import org.eventa.core.streotype.EventHandler;
+import org.eventa.core.support.model.IncrementedEvent;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class EventHandlerBatcherTest {
+
+    private final ExecutorService flushExecutor = Executors.newFixedThreadPool(4);
+
+    @AfterEach
+    void tearDown() {
+        flushExecutor.shutdownNow();
+    }
+
+    @Test
+    void flushesFullBatchesInArrivalOrder() throws Exception {
+        List<List<Long>> batches = new CopyOnWriteArrayList<>();
+        EventHandlerBatcher batcher = new EventHandlerBatcher((handler, events) -> batches.add(amounts(events)), flushExecutor);
+        HandlerInvoker handler = handler("bySize");
+        UUID id = UUID.randomUUID();
+
+        List<CompletableFuture<Void>> results = new ArrayList<>();
+        for (long i = 0; i < 10; i++) {
+            results.add(batcher.add(handler, event(id, i)));
+        }
+
+        CompletableFuture.allOf(results.subList(0, 8).toArray(CompletableFuture[]::new)).get(10, TimeUnit.SECONDS);
+        assertThat(batches).containsExactly(List.of(0L, 1L, 2L, 3L), List.of(4L, 5L, 6L, 7L));
+        // the rest waits for more events or the timeout
+        assertThat(results.subList(8, 10)).noneMatch(CompletableFuture::isDone);
+    }
+
+    @Test
+    void flushesAPartialBatchOnTimeout() throws Exception {
+        List<List<Long>> batches = new CopyOnWriteArrayList<>();
+        EventHandlerBatcher batcher = new EventHandlerBatcher((handler, events) -> batches.add(amounts(events)), flushExecutor);
+        HandlerInvoker handler = handler("byTimeout");
+        UUID id = UUID.randomUUID();
+
+        CompletableFuture<Void> first = batcher.add(handler, event(id, 0));
+        CompletableFuture<Void> second = batcher.add(handler, event(id, 1));
+
+        CompletableFuture.allOf(first, second).get(10, TimeUnit.SECONDS);
+        assertThat(batches).containsExactly(List.of(0L, 1L));
+    }
+
+    @Test
+    void concurrentProducersGetEveryEventDeliveredOnceInSerialBatches() throws Exception {
+        AtomicInteger active = new AtomicInteger();
+        AtomicInteger overlaps = new AtomicInteger();
+        AtomicInteger oversized = new AtomicInteger();
+        Map<UUID, List<Long>> delivered = new ConcurrentHashMap<>();
+        EventHandlerBatcher batcher = new EventHandlerBatcher((handler, events) -> {
+            if (active.incrementAndGet() != 1) {
+                overlaps.incrementAndGet();
+            }
+            if (events.size() > 4) {
+                oversized.incrementAndGet();
+            }
+            for (BaseEvent event : events) {
+                delivered.computeIfAbsent(event.getId(), key -> new CopyOnWriteArrayList<>()).add(((IncrementedEvent) event).getAmount());
+            }
+            active.decrementAndGet();
+        }, flushExecutor);
+        HandlerInvoker handler = handler("bySize");
+
+        int producers = 8;
+        int eventsPerProducer = 1_000;
+        List<UUID> ids = new ArrayList<>();
+        ExecutorService producerPool = Executors.newFixedThreadPool(producers);
+        List<CompletableFuture<Void>> results = new CopyOnWriteArrayList<>();
+        try {
+            List<CompletableFuture<Void>> adding = new ArrayList<>();
+            for (int p = 0; p < producers; p++) {
+                UUID id = UUID.randomUUID();
+                ids.add(id);
+                adding.add(CompletableFuture.runAsync(() -> {
+                    for (long i = 0; i < eventsPerProducer; i++) {
+                        results.add(batcher.add(handler, event(id, i)));
+                    }
+                }, producerPool));
+            }
+            CompletableFuture.allOf(adding.toArray(CompletableFuture[]::new)).get(10, TimeUnit.SECONDS);
+        } finally {
+            producerPool.shutdown();
+        }
+
+        // 8000 events fill batches of 4 exactly, nothing is left for the timeout
+        CompletableFuture.allOf(results.toArray(CompletableFuture[]::new)).get(10, TimeUnit.SECONDS);
+        assertThat(overlaps).hasValue(0);
+        assertThat(oversized).hasValue(0);
+        for (UUID id : ids) {
+            assertThat(delivered.get(id)).containsExactlyElementsOf(LongStream.range(0, eventsPerProducer).boxed().toList());
+        }
+    }
+
+    @Test
+    void failedBatchFailsOnlyItsOwnEvents() throws Exception {
+        List<List<Long>> batches = new CopyOnWriteArrayList<>();
+        EventHandlerBatcher batcher = new EventHandlerBatcher((handler, events) -> {
+            if (amounts(events).contains(-1L)) {
+                throw new IllegalStateException("handler failed");
+            }
+            batches.add(amounts(events));
+        }, flushExecutor);
+        HandlerInvoker handler = handler("bySize");
+        UUID id = UUID.randomUUID();
+
+        List<CompletableFuture<Void>> failing = new ArrayList<>();
+        for (long amount : new long[]{0, -1, 2, 3}) {
+            failing.add(batcher.add(handler, event(id, amount)));
+        }
+        List<CompletableFuture<Void>> next = new ArrayList<>();
+        for (long i = 4; i < 8; i++) {
+            next.add(batcher.add(handler, event(id, i)));
+        }
+
+        CompletableFuture.allOf(next.toArray(CompletableFuture[]::new)).get(10, TimeUnit.SECONDS);
+        for (CompletableFuture<Void> result : failing) {
+            assertThatThrownBy(() -> result.get(10, TimeUnit.SECONDS)).hasCauseInstanceOf(IllegalStateException.class);
+        }
+        assertThat(batches).containsExactly(List.of(4L, 5L, 6L, 7L));
+    }
+
+    private static HandlerInvoker handler(String name) throws NoSuchMethodException {
+        return HandlerInvoker.of(Handlers.class.getDeclaredMethod(name, List.class));
+    }
+
+    private static BaseEvent event(UUID id, long amount) {
+        return IncrementedEvent.builder().id(id).amount(amount).build();
+    }
+
+    private static List<Long> amounts(List<BaseEvent> events) {
+        return events.stream().map(event -> ((IncrementedEvent) event).getAmount()).toList();
+    }
+
+    static class Handlers {
+        @EventHandler(batchSize = 4, batchTimeoutMs = 60_000)
+        void bySize(List<IncrementedEvent> events) {
+        }
+
+        @EventHandler(batchSize = 100, batchTimeoutMs = 20)
+        void byTimeout(List<IncrementedEvent> events) {
+        }
+    }
+}
@@ -0,0 +1,220 @@
+/*
+ *
+ *  * MIT License
+ *  *
+ *  * Copyright (c) 2024 Partha Sutradhar.
+ *  *
+ *  * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  * of this software and associated documentation files (the "Software"), to deal
+ *  * in the Software without restriction, including without limitation the rights
+ *  * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  * copies of the Software, and to permit persons to whom the Software is
+ *  * furnished to do so, subject to the following conditions:
+ *  *
+ *  * The above copyright notice and this permission notice shall be included in all
+ *  * copies or substantial portions of the Software.
+ *  *
+ *  * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  * SOFTWARE.
+ *
+ */
+
+package org.eventa.core.eventstore;
+
+import org.eventa.core.config.EventStoreProperties;
+import org.eventa.core.config.EventaProperties;
+import org.eventa.core.config.MappedEventStoreProperties;
+import org.eventa.core.events.BaseEvent;
+import org.eventa.core.serializer.EventSerializer;
+import org.eventa.core.serializer.EventSerializers;
+import org.eventa.core.serializer.SchemaRegistry;
+import org.eventa.core.support.RecordingEventProducer;
+import org.eventa.core.support.model.CounterCreatedEvent;
+import org.eventa.core.support.model.IncrementedEvent;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Crash recovery works on the segment files of a closed store: a test damages the tail of the log the way a crash
+// would and reopens the directory. Every save below is one aggregate, so a damaged save must vanish as a whole.
+class MappedEventStoreTest {
+
+    private static final int HEADER = 8;
+
+    @TempDir
+    Path directory;
+
+    private final List<MappedEventStore> opened = new ArrayList<>();
+    private final UUID first = UUID.randomUUID();
+    private final UUID second = UUID.randomUUID();
+
+    @BeforeEach
+    void writeTwoSaves() throws IOException {
+        MappedEventStore store = open();
+        store.saveEvents(first, "Counter", create(first, 2), 1, true);
+        store.saveEvents(second, "Counter", create(second, 3), 2, true);
+        store.close();
+    }
+
+    @AfterEach
+    void close() {
+        opened.forEach(MappedEventStore::close);
+    }
+
+    @Test
+    void reopensEverySave() throws IOException {
+        MappedEventStore store = open();
+
+        assertThat(store.getEventsFromAggregate(first)).hasSize(2);
+        assertThat(store.getEventsFromAggregate(second)).extracting(BaseEvent::getVersion).containsExactly(0, 1, 2);
+        assertThat(store.readAll(0, 100)).extracting(EventModel::getPosition).containsExactly(1L, 2L, 3L, 4L, 5L);
+    }
+
+    @Test
+    void dropsTheSaveWhoseLastRecordIsTorn() throws IOException {
+        List<Integer> records = records();
+        // the file ends in the middle of the last record
+        try (FileChannel channel = FileChannel.open(segment(), StandardOpenOption.WRITE)) {
+            channel.truncate(records.get(4) + HEADER + 5);
+        }
+
+        assertRecoveredToFirstSave(open());
+    }
+
+    @Test
+    void dropsTheSaveWithACrcMismatch() throws IOException {
+        List<Integer> records = records();
+        // a flipped payload byte in the middle record of the second save
+        int at = records.get(4) - 1;
+        try (FileChannel channel = FileChannel.open(segment(), StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer value = ByteBuffer.allocate(1);
+            channel.read(value, at);
+            channel.write(ByteBuffer.wrap(new byte[]{(byte) (value.get(0) ^ 0x5a)}), at);
+        }
+
+        assertRecoveredToFirstSave(open());
+    }
+
+    @Test
+    void dropsTheSaveWhosePagesWereNeverWritten() throws IOException {
+        List<Integer> records = records();
+        // the first record of the second save made it to disk, the rest of the file is zeroes
+        try (FileChannel channel = FileChannel.open(segment(), StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.allocate((int) channel.size() - records.get(3)), records.get(3));
+        }
+
+        assertRecoveredToFirstSave(open());
+    }
+
+    @Test
+    void aSaveBecomesVisibleAsAWhole() throws Exception {
+        MappedEventStore store = open();
+        UUID aggregateId = UUID.randomUUID();
+        AtomicBoolean writing = new AtomicBoolean(true);
+        CompletableFuture<Integer> torn = CompletableFuture.supplyAsync(() -> {
+            int seen = 0;
+            while (writing.get()) {
+                if (store.streamEventsFromAggregate(aggregateId).count() % 3 != 0) {
+                    seen++;
+                }
+            }
+            return seen;
+        });
+
+        for (int save = 0; save < 500; save++) {
+            store.saveEvents(aggregateId, "Counter", increments(aggregateId, 3), save * 3 + 2, false);
+        }
+        writing.set(false);
+
+        assertThat(torn.get()).isZero();
+        assertThat(store.streamEventsFromAggregate(aggregateId)).hasSize(1500);
+    }
+
+    private void assertRecoveredToFirstSave(MappedEventStore store) throws IOException {
+        assertThat(store.getEventsFromAggregate(first)).hasSize(2);
+        assertThat(store.streamEventsFromAggregate(second)).isEmpty();
+        assertThat(store.readAll(0, 100)).extracting(EventModel::getPosition).containsExactly(1L, 2L);
+
+        // the dropped save's bytes are gone, the next save continues right after the first one and survives a reopen
+        store.saveEvents(second, "Counter", create(second, 1), 0, true);
+        store.close();
+        MappedEventStore reopened = open();
+        assertThat(reopened.getEventsFromAggregate(second)).hasSize(1);
+        assertThat(reopened.readAll(0, 100)).extracting(EventModel::getPosition).containsExactly(1L, 2L, 3L);
+    }
+
+    // offsets of the records in the first segment, in log order
+    private List<Integer> records() throws IOException {
+        List<Integer> offsets = new ArrayList<>();
+        try (FileChannel channel = FileChannel.open(segment(), StandardOpenOption.READ)) {
+            ByteBuffer length = ByteBuffer.allocate(4);
+            long offset = 0;
+            while (offset + HEADER <= channel.size()) {
+                length.clear();
+                channel.read(length, offset);
+                if (length.getInt(0) == 0) {
+                    break;
+                }
+                offsets.add((int) offset);
+                offset += HEADER + length.getInt(0);
+            }
+        }
+        assertThat(offsets).hasSize(5);
+        return offsets;
+    }
+
+    private Path segment() {
+        return directory.resolve("0000000000.segment");
+    }
+
+    private MappedEventStore open() throws IOException {
+        EventaProperties eventaProperties = new EventaProperties();
+        eventaProperties.getEventStore().setType(EventStoreProperties.Type.MAPPED);
+        MappedEventStoreProperties mapped = eventaProperties.getEventStore().getMapped();
+        mapped.setDirectory(directory.toString());
+        mapped.setSegmentSize(64 * 1024);
+        mapped.setFsyncIntervalMs(0);
+        DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+        EventSerializers eventSerializers = new EventSerializers(eventaProperties,
+                beanFactory.getBeanProvider(EventSerializer.class), beanFactory.getBeanProvider(SchemaRegistry.class));
+        MappedEventStore store = new MappedEventStore(new RecordingEventProducer(), eventaProperties, eventSerializers);
+        store.open();
+        opened.add(store);
+        return store;
+    }
+
+    private static List<BaseEvent> create(UUID aggregateId, int count) {
+        List<BaseEvent> events = new ArrayList<>();
+        events.add(CounterCreatedEvent.builder().id(aggregateId).build());
+        events.addAll(increments(aggregateId, count - 1));
+        return events;
+    }
+
+    private static List<BaseEvent> increments(UUID aggregateId, int count) {
+        List<BaseEvent> events = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            events.add(IncrementedEvent.builder().id(aggregateId).amount(1).build());
+        }
+        return events;
+    }
+}
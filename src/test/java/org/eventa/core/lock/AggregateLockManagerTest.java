@@ -0,0 +1,133 @@
+/*
+ *
+ *  * MIT License
+ *  *
+ *  * Copyright (c) 2024 Partha Sutradhar.
+ *  *
+ *  * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  * of this software and associated documentation files (the "Software"), to deal
+ *  * in the Software without restriction, including without limitation the rights
+ *  * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  * copies of the Software, and to permit persons to whom the Software is
+ *  * furnished to do so, subject to the following conditions:
+ *  *
+ *  * The above copyright notice and this permission notice shall be included in all
+ *  * copies or substantial portions of the Software.
+ *  *
+ *  * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  * SOFTWARE.
+ *
+ */
+
+package org.eventa.core.lock;
+
+import org.eventa.core.lock.AggregateLockManager.AggregateLock;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AggregateLockManagerTest {
+
+    private final AggregateLockManager aggregateLockManager = new AggregateLockManager();
+    private final ExecutorService executor = Executors.newFixedThreadPool(8);
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void holdersOfOneAggregateExcludeEachOther() throws Exception {
+        UUID id = UUID.randomUUID();
+        int[] counter = new int[1];
+        int threads = 8;
+        int increments = 10_000;
+        List<CompletableFuture<Void>> work = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            work.add(CompletableFuture.runAsync(() -> {
+                for (int i = 0; i < increments; i++) {
+                    try (AggregateLock ignored = aggregateLockManager.acquire(id)) {
+                        // a plain read-modify-write, lost updates show up if two threads ever hold the lock together
+                        counter[0] = counter[0] + 1;
+                    }
+                }
+            }, executor));
+        }
+
+        CompletableFuture.allOf(work.toArray(CompletableFuture[]::new)).get(30, TimeUnit.SECONDS);
+        assertThat(counter[0]).isEqualTo(threads * increments);
+        AggregateLockManager.LockStats stats = aggregateLockManager.getStats();
+        assertThat(stats.acquisitions()).isEqualTo((long) threads * increments);
+        assertThat(stats.activeLocks()).isZero();
+    }
+
+    @Test
+    void differentAggregatesDoNotBlockEachOther() throws Exception {
+        CountDownLatch held = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<Void> holder = CompletableFuture.runAsync(() -> {
+            try (AggregateLock ignored = aggregateLockManager.acquire(UUID.randomUUID())) {
+                held.countDown();
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, executor);
+        assertThat(held.await(10, TimeUnit.SECONDS)).isTrue();
+
+        CompletableFuture<Void> other = CompletableFuture.runAsync(() -> {
+            try (AggregateLock ignored = aggregateLockManager.acquire(UUID.randomUUID())) {
+                assertThat(aggregateLockManager.getStats().activeLocks()).isEqualTo(2);
+            }
+        }, executor);
+
+        other.get(10, TimeUnit.SECONDS);
+        release.countDown();
+        holder.get(10, TimeUnit.SECONDS);
+        assertThat(aggregateLockManager.getStats().contendedAcquisitions()).isZero();
+        assertThat(aggregateLockManager.getStats().activeLocks()).isZero();
+    }
+
+    @Test
+    void waitersKeepTheEntryAliveUntilTheLastOneReleases() throws Exception {
+        UUID id = UUID.randomUUID();
+        AggregateLock first = aggregateLockManager.acquire(id);
+        CountDownLatch waiting = new CountDownLatch(1);
+        CompletableFuture<Void> waiter = CompletableFuture.runAsync(() -> {
+            waiting.countDown();
+            try (AggregateLock ignored = aggregateLockManager.acquire(id)) {
+                assertThat(aggregateLockManager.getStats().activeLocks()).isEqualTo(1);
+            }
+        }, executor);
+        assertThat(waiting.await(10, TimeUnit.SECONDS)).isTrue();
+        // give the waiter time to park on the lock
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (aggregateLockManager.getStats().contendedAcquisitions() == 0 && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+
+        first.close();
+        // closing twice must not drop the reference the waiter holds
+        first.close();
+        waiter.get(10, TimeUnit.SECONDS);
+
+        AggregateLockManager.LockStats stats = aggregateLockManager.getStats();
+        assertThat(stats.contendedAcquisitions()).isEqualTo(1);
+        assertThat(stats.activeLocks()).isZero();
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ *
+ *  * MIT License
+ *  *
+ *  * Copyright (c) 2024 Partha Sutradhar.
+ *  *
+ *  * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  * of this software and associated documentation files (the "Software"), to deal
+ *  * in the Software without restriction, including without limitation the rights
+ *  * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  * copies of the Software, and to permit persons to whom the Software is
+ *  * furnished to do so, subject to the following conditions:
+ *  *
+ *  * The above copyright notice and this permission notice shall be included in all
+ *  * copies or substantial portions of the Software.
+ *  *
+ *  * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  * SOFTWARE.
+ *
+ */
+
+package org.eventa.core.support;
+
+import org.eventa.core.config.EventStoreProperties;
+import org.eventa.core.config.EventaProperties;
+import org.eventa.core.dispatcher.impl.CommandDispatcherImpl;
+import org.eventa.core.eventstore.InMemoryEventStore;
+import org.eventa.core.factory.AggregateCache;
+import org.eventa.core.factory.AggregateFactory;
+import org.eventa.core.interceptor.CommandInterceptorRegisterer;
+import org.eventa.core.lock.AggregateLockManager;
+import org.eventa.core.processor.PostProcessor;
+import org.eventa.core.producer.EventProducer;
+import org.eventa.core.registry.*;
+import org.eventa.core.snapshot.BinarySnapshotCodec;
+import org.eventa.core.snapshot.SnapshotCodec;
+import org.eventa.core.snapshot.SnapshotManager;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.core.env.MapPropertySource;
+
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Consumer;
+
+// The command side wired like the auto-configuration, on the in-memory event store. The event producer and the
+// command executor come from the test, so it can observe publishing and decide when queued commands run.
+public final class EventaTestContext {
+
+    private EventaTestContext() {
+    }
+
+    public static AnnotationConfigApplicationContext start(Consumer<EventaProperties> customizer,
+                                                           EventProducer eventProducer,
+                                                           ExecutorService commandExecutor,
+                                                           Class<?>... components) {
+        EventaProperties eventaProperties = new EventaProperties();
+        eventaProperties.getEventStore().setType(EventStoreProperties.Type.MEMORY);
+        customizer.accept(eventaProperties);
+
+        AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext();
+        // registered beans still go through their @ConditionalOnProperty, InMemoryEventStore needs the store type
+        context.getEnvironment().getPropertySources().addFirst(
+                new MapPropertySource("eventa", Map.of("eventa.event-store.type", "memory")));
+        context.registerBean(EventaProperties.class, () -> eventaProperties);
+        context.registerBean(EventProducer.class, () -> eventProducer);
+        context.registerBean(InMemoryEventStore.class);
+        context.registerBean(CommandInterceptorRegisterer.class);
+        context.registerBean(SnapshotCodec.class, () -> new BinarySnapshotCodec());
+        // snapshots are off for the in-memory store, the repository and template are never touched
+        context.registerBean(SnapshotManager.class, () -> new SnapshotManager(null, null, context.getBean(SnapshotCodec.class), eventaProperties));
+        context.registerBean("eventaCommandExecutor", ExecutorService.class, () -> commandExecutor,
+                definition -> definition.setDestroyMethodName("shutdown"));
+        context.register(CommandHandlerRegistry.class, EventSourcingHandlerRegistry.class, EventHandlerRegistry.class,
+                QueryHandlerRegistry.class, SagaHandlerRegistry.class, LeaderHandlerRegistry.class,
+                NotLeaderHandlerRegistry.class, PostProcessor.class, AggregateCache.class, AggregateFactory.class,
+                AggregateLockManager.class, CommandDispatcherImpl.class);
+        context.register(components);
+        context.refresh();
+        return context;
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ *
+ *  * MIT License
+ *  *
+ *  * Copyright (c) 2024 Partha Sutradhar.
+ *  *
+ *  * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  * of this software and associated documentation files (the "Software"), to deal
+ *  * in the Software without restriction, including without limitation the rights
+ *  * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  * copies of the Software, and to permit persons to whom the Software is
+ *  * furnished to do so, subject to the following conditions:
+ *  *
+ *  * The above copyright notice and this permission notice shall be included in all
+ *  * copies or substantial portions of the Software.
+ *  *
+ *  * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  * SOFTWARE.
+ *
+ */
+
+package org.eventa.core.support;
+
+import org.eventa.core.events.BaseEvent;
+import org.eventa.core.producer.EventProducer;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+// Acknowledges every publish at once and keeps the events in publish order. An optional hook runs on the
+// publishing thread before the acknowledgement, while the writer is still inside saveEvents.
+public class RecordingEventProducer implements EventProducer {
+
+    private final List<BaseEvent> published = new CopyOnWriteArrayList<>();
+    private volatile Consumer<List<BaseEvent>> onPublish = events -> {
+    };
+
+    public List<BaseEvent> published() {
+        return published;
+    }
+
+    public void onPublish(Consumer<List<BaseEvent>> onPublish) {
+        this.onPublish = onPublish;
+    }
+
+    @Override
+    public void produce(String aggregateType, BaseEvent baseEvent) {
+        produceAll(aggregateType, List.of(baseEvent));
+    }
+
+    @Override
+    public CompletableFuture<String> produceEvent(String aggregateType, BaseEvent baseEvent) {
+        return produceAll(aggregateType, List.of(baseEvent));
+    }
+
+    @Override
+    public CompletableFuture<String> produceAll(String aggregateType, List<BaseEvent> baseEvents) {
+        published.addAll(baseEvents);
+        onPublish.accept(baseEvents);
+        return CompletableFuture.completedFuture(baseEvents.get(0).getId().toString());
+    }
+}